@@ -0,0 +1,191 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential little endian binary file used by Percolation and PercolationStats checkpoints.
+ * Scalars and primitive arrays are copied in bulk through one reusable direct buffer with positional
+ * channel reads and writes, so commit forces every written byte and no mapping outlives the file.
+ * Writes go to a temporary file which replaces the target only on commit, so a crash while
+ * writing leaves the previous checkpoint intact.
+ *
+ * @author anilk
+ */
+class CheckpointFile implements Closeable {
+    // Transfer buffer size, arrays are copied in chunks of this many bytes.
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final FileChannel channel;
+    private final Path target;
+    private final Path temporary;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private long position = 0;
+    private boolean committed = false;
+
+    private CheckpointFile(FileChannel channel, Path target, Path temporary) {
+        this.channel = channel;
+        this.target = target;
+        this.temporary = temporary;
+    }
+
+    /**
+     * Opens a checkpoint for writing, see commit.
+     * @param target : checkpoint path, replaced on commit.
+     * @return writable checkpoint.
+     * @throws IOException if temporary file can not be created.
+     */
+    static CheckpointFile create(Path target) throws IOException {
+        final Path temporary = Paths.get(target.toString() + ".tmp");
+        final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING,
+                                                     StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new CheckpointFile(channel, target, temporary);
+    }
+
+    /**
+     * Opens a checkpoint for reading.
+     * @param source : checkpoint path.
+     * @return readable checkpoint.
+     * @throws IOException if file can not be opened.
+     */
+    static CheckpointFile open(Path source) throws IOException {
+        return new CheckpointFile(FileChannel.open(source, StandardOpenOption.READ), source, null);
+    }
+
+    void writeHeader(int magic, int version) throws IOException {
+        writeInt(magic);
+        writeInt(version);
+    }
+
+    /**
+     * @throws IOException if file does not start with given magic and version.
+     */
+    void readHeader(int magic, int version) throws IOException {
+        final int fileMagic = readInt();
+        final int fileVersion = readInt();
+        if (fileMagic != magic || fileVersion != version) {
+            throw new IOException(target + " is not a checkpoint of expected type, magic : " + Integer.toHexString(fileMagic)
+                                  + " version : " + fileVersion);
+        }
+    }
+
+    void writeInt(int value) throws IOException {
+        buffer.clear();
+        buffer.putInt(value).flip();
+        writeBuffer();
+    }
+
+    void writeLong(long value) throws IOException {
+        buffer.clear();
+        buffer.putLong(value).flip();
+        writeBuffer();
+    }
+
+    void writeDouble(double value) throws IOException {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    int readInt() throws IOException {
+        readBuffer(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long readLong() throws IOException {
+        readBuffer(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    void writeInts(int[] values) throws IOException {
+        final int perChunk = BUFFER_BYTES / Integer.BYTES;
+        for (int offset = 0; offset < values.length; offset += perChunk) {
+            final int length = Math.min(perChunk, values.length - offset);
+            buffer.clear();
+            buffer.asIntBuffer().put(values, offset, length);
+            buffer.limit(length * Integer.BYTES);
+            writeBuffer();
+        }
+    }
+
+    void readInts(int[] values) throws IOException {
+        final int perChunk = BUFFER_BYTES / Integer.BYTES;
+        for (int offset = 0; offset < values.length; offset += perChunk) {
+            final int length = Math.min(perChunk, values.length - offset);
+            readBuffer(length * Integer.BYTES);
+            buffer.asIntBuffer().get(values, offset, length);
+        }
+    }
+
+    void writeLongs(long[] values) throws IOException {
+        final int perChunk = BUFFER_BYTES / Long.BYTES;
+        for (int offset = 0; offset < values.length; offset += perChunk) {
+            final int length = Math.min(perChunk, values.length - offset);
+            buffer.clear();
+            buffer.asLongBuffer().put(values, offset, length);
+            buffer.limit(length * Long.BYTES);
+            writeBuffer();
+        }
+    }
+
+    void readLongs(long[] values) throws IOException {
+        final int perChunk = BUFFER_BYTES / Long.BYTES;
+        for (int offset = 0; offset < values.length; offset += perChunk) {
+            final int length = Math.min(perChunk, values.length - offset);
+            readBuffer(length * Long.BYTES);
+            buffer.asLongBuffer().get(values, offset, length);
+        }
+    }
+
+    /**
+     * Flushes written data to disk and atomically replaces the target with it.
+     * @throws IOException if data can not be flushed or moved.
+     */
+    void commit() throws IOException {
+        channel.force(true);
+        channel.close();
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * Closes the file, an uncommitted write is discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (temporary != null && !committed) {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // writes buffer from its position to its limit
+    private void writeBuffer() throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // fills buffer with the next bytes of the file, buffer is left flipped for reading them
+    private void readBuffer(int bytes) throws IOException {
+        buffer.clear();
+        buffer.limit(bytes);
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException(target + " is truncated at " + position + " bytes");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
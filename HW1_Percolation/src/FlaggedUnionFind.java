@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Weighted quick union with path compression whose roots carry a small set of flags.
+ * Flags of a component are the OR of the flags marked on any of its members, so percolation can
+ * keep "touches top" and "touches bottom" on one structure instead of two union-finds with virtual sites.
+ *
+ * Storage is kept compact for huge grids:
+ *      parent : parent index of a member, or -(component size) for a root. No separate size array.
+ *      topBits, bottomBits : flags of roots packed 64 per long.
+ * which is ~4.25 bytes per element instead of 9 with int parent, int size and byte flags.
+ *
+ * @author anilk
+ */
+public class FlaggedUnionFind {
+    public static final byte TOP = 1;
+    public static final byte BOTTOM = 2;
+    public static final byte TOP_BOTTOM = TOP | BOTTOM;
+
+    private final int[] parent;
+    private final long[] topBits;
+    private final long[] bottomBits;
+
+    /** Constructs n singleton components 0 to n-1 without flags.
+     * @param n : number of elements.
+     */
+    public FlaggedUnionFind(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("FlaggedUnionFind size : " + n + " is < 0");
+        }
+        parent = new int[n];
+        topBits = new long[wordCount(n)];
+        bottomBits = new long[wordCount(n)];
+        Arrays.fill(parent, -1);
+    }
+
+    /**
+     * @param p : element
+     * @return root of the component containing p.
+     */
+    public int find(int p) {
+        int root = p;
+        int pathLength = 0;
+        while (parent[root] >= 0) {
+            root = parent[root];
+            pathLength++;
+        }
+        if (PercolationMetrics.ENABLED) {
+            PercolationMetrics.find(pathLength);
+        }
+        while (p != root) {
+            int next = parent[p];
+            parent[p] = root;
+            p = next;
+        }
+        return root;
+    }
+
+    /**
+     * Merges components of p and q, root of the result keeps flags of both.
+     * @param p : element
+     * @param q : element
+     * @return root of the merged component.
+     */
+    public int union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return rootP;
+        }
+        // sizes are negative, bigger component has the smaller value
+        if (parent[rootP] > parent[rootQ]) {
+            int swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+        }
+        parent[rootP] += parent[rootQ];
+        parent[rootQ] = rootP;
+        setFlags(rootP, flagsOfRoot(rootQ));
+        if (PercolationMetrics.ENABLED) {
+            PercolationMetrics.union();
+        }
+        return rootP;
+    }
+
+    /**
+     * Adds flag to the component containing p.
+     * @param p : element
+     * @param flag : TOP, BOTTOM or both.
+     */
+    public void mark(int p, byte flag) {
+        setFlags(find(p), flag);
+    }
+
+    /**
+     * @param p : element
+     * @return flags of the component containing p.
+     */
+    public int flags(int p) {
+        return flagsOfRoot(find(p));
+    }
+
+    /**
+     * @param p : element
+     * @param flag : TOP, BOTTOM or both.
+     * @return true if the component containing p carries all bits of flag.
+     */
+    public boolean hasFlag(int p, byte flag) {
+        return (flags(p) & flag) == flag;
+    }
+
+    /**
+     * @param p : element
+     * @return number of elements in the component containing p.
+     */
+    public int componentSize(int p) {
+        return -parent[find(p)];
+    }
+
+    /**
+     * Makes p a singleton root without flags. Caller has to reset every element of p's component
+     * together, otherwise elements pointing to p are left in a broken tree.
+     * @param p : element
+     */
+    void reset(int p) {
+        parent[p] = -1;
+        topBits[p >>> 6] &= ~(1L << p);
+        bottomBits[p >>> 6] &= ~(1L << p);
+    }
+
+    /**
+     * Writes parent array and flag bits, element count is written by the owner.
+     * @param file : checkpoint being written.
+     */
+    void writeTo(CheckpointFile file) throws IOException {
+        file.writeInts(parent);
+        file.writeLongs(topBits);
+        file.writeLongs(bottomBits);
+    }
+
+    /**
+     * Reads state written by writeTo into a union-find of the same element count.
+     * @param file : checkpoint being read.
+     */
+    void readFrom(CheckpointFile file) throws IOException {
+        file.readInts(parent);
+        file.readLongs(topBits);
+        file.readLongs(bottomBits);
+    }
+
+    private int flagsOfRoot(int root) {
+        int result = 0;
+        if (isSet(topBits, root)) {
+            result |= TOP;
+        }
+        if (isSet(bottomBits, root)) {
+            result |= BOTTOM;
+        }
+        return result;
+    }
+
+    private void setFlags(int root, int flag) {
+        if ((flag & TOP) != 0) {
+            topBits[root >>> 6] |= 1L << root;
+        }
+        if ((flag & BOTTOM) != 0) {
+            bottomBits[root >>> 6] |= 1L << root;
+        }
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @param bitCount : number of bits.
+     * @return number of longs required to hold bitCount bits.
+     */
+    static int wordCount(int bitCount) {
+        return (int) (((long) bitCount + 63) >>> 6);
+    }
+}
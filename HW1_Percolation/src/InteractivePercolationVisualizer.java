@@ -28,6 +28,7 @@ public class InteractivePercolationVisualizer {
         StdOut.println(n);
 
         Percolation percolation = new Percolation(n);
+        percolation.enableChangeTracking();
         PercolationVisualizer.draw(percolation, n);
         StdDraw.show();
 
@@ -53,8 +54,8 @@ public class InteractivePercolationVisualizer {
                     percolation.open(row, col);
                 }
 
-                // draw n-by-n percolation system
-                PercolationVisualizer.draw(percolation, n);
+                // draw sites changed by the click
+                PercolationVisualizer.drawChanges(percolation, n);
             }
             StdDraw.show();
             StdDraw.pause(DELAY);
@@ -1,21 +1,59 @@
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
 
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdRandom;
 
 public class Percolation {
+    // Largest site count a java array (union-find parent, bitset words) can index safely.
+    private static final long MAX_GRID_NUMBER = Integer.MAX_VALUE - 8;
+    // "PERC" and layout version of checkpoint files.
+    private static final int CHECKPOINT_MAGIC = 0x50455243;
+    private static final int CHECKPOINT_VERSION = 1;
+    
     /**
-     *  gridGraphVirtualTopBottom : will be used if perculation occurs without looping n bottom elements.
-     *                              Be careful while using because bottom elements connected to each other.
-     *                              Therefore can not be used for isFull check.
-     *  gridGraphVirtualTop : will be used if grid (row, col) can be reached from top i.e. full. 
+     *  gridGraph : single union-find over the grids. Instead of virtual top and bottom grids every root
+     *              carries TOP / BOTTOM flags, so bottom grids are never connected to each other and
+     *              there is no backwash. isFull checks TOP flag, percolation is a root with both flags.
+     *  gridState : open state of grids packed 64 per long, indexed by convertRowColToIndex.
+     *  lastRowStart : first 1D index of the bottom row, grids at or after it have no bottom neighbour.
+     *  blockedOrder : sampler of openRandomBlockedSite, allocated on first use. Indexes in [0, blockedRemaining)
+     *                 are not drawn yet and incremental Fisher-Yates draws from there. Grids opened
+     *                 through open() stay in the range and are dropped when drawn.
+     *  notDrawnBits : indexes in [0, blockedRemaining) packed 64 per long, a closed grid which is not there
+     *                 is put back at blockedRemaining.
+     *  componentRing : allocated by enableChangeTracking or addListener. Open grids of a component form a cycle
+     *                  componentRing[i] -> next grid, so grids of a component becoming full can be listed.
+     *  changedGrids : 1D index of grids opened or became full since last drainChangedSites,
+     *                 null if change tracking is not enabled.
+     *  listeners : receivers of full grid and percolation events, null if none is added.
+     *  visitEpoch, closeEpoch : allocated by the first close. Grid is visited by the current close
+     *                           if visitEpoch[index] == closeEpoch, so marks never need clearing.
+     *  closeMembers : grids of the component split by the current close, also used as the flood fill queue.
      */
-    private final WeightedQuickUnionUF gridGraphVirtualTopBottom;
-    private final WeightedQuickUnionUF gridGraphVirtualTop;
+    private final FlaggedUnionFind gridGraph;
     private final int size;
     private final int gridNumber;
-    private final int virtualTopGridIndex;
-    private final int virtualBottomGridIndex;
-    private boolean[][] gridState;
+    private final int lastRowStart;
+    private final long[] gridState;
     private int openGridCount = 0;
+    private boolean percolates = false;
+    private int[] blockedOrder;
+    private int blockedRemaining;
+    private long[] notDrawnBits;
+    private int[] componentRing;
+    private int[] changedGrids;
+    private int changedGridCount;
+    private List<PercolationListener> listeners;
+    private int[] visitEpoch;
+    private int closeEpoch;
+    private int[] closeMembers;
     
     /** Constructs n by n percolation grid.
      * @param n :  width and height parameter for percolation.
@@ -25,13 +63,18 @@ public class Percolation {
             throw new IllegalArgumentException("Percolation grid size : " + n + " is <= 0");
         }
 
+        final long gridNumber = (long) n * n;
+        if (gridNumber > MAX_GRID_NUMBER) {
+            throw new IllegalArgumentException("Percolation grid size : " + n + " has " + gridNumber
+                                               + " grids, more than " + MAX_GRID_NUMBER
+                                               + " is not supported since grids are stored in int indexed arrays");
+        }
+
         size = n;
-        gridNumber = size * size;
-        gridGraphVirtualTopBottom = new WeightedQuickUnionUF(gridNumber + 2); // 0 to gridNumber+1
-        gridGraphVirtualTop = new WeightedQuickUnionUF(gridNumber + 1); // 0 to gridNumber 
-        virtualTopGridIndex = gridNumber;
-        virtualBottomGridIndex = gridNumber + 1;
-        gridState = new boolean[size][size];
+        this.gridNumber = (int) gridNumber;
+        lastRowStart = this.gridNumber - size;
+        gridGraph = new FlaggedUnionFind(this.gridNumber);
+        gridState = new long[FlaggedUnionFind.wordCount(this.gridNumber)];
     }
     
     /** opens grid in (row, col)
@@ -41,44 +84,450 @@ public class Percolation {
      */
     public void open(int row, int col) {
         validate(row, col);
-        if (isOpen(row, col)) {
+        openSite(convertRowColToIndex(row, col));
+    }
+    
+//-----------------------------Flat index kernel------------------------------------
+// Below methods take 1D index (row - 1) * n + (col - 1) and do not check range, caller has to
+// keep index in [0, n * n). Row / col methods validate once and delegate here.
+    
+    /**
+     * Opens grid at index and connects it with its open neighbours.
+     * @param index : 1D index of grid 0 to n*n-1, not checked.
+     */
+    public void openSite(int index) {
+        final boolean redundant = isOpenSite(index);
+        if (PercolationMetrics.ENABLED) {
+            PercolationMetrics.open(redundant);
+        }
+        if (redundant) {
             return;
         }
         
-        int inputIndex = convertRowColToIndex(row, col);
-
-        // Top connection required
-        if (row == 1) {
-            gridGraphVirtualTop.union(inputIndex, virtualTopGridIndex);
-            gridGraphVirtualTopBottom.union(inputIndex, virtualTopGridIndex);
-            
+        gridState[index >>> 6] |= 1L << index;
+        openGridCount++;
+        
+        final int[] becameFull = componentRing != null ? recordChanges(index) : null;
+        
+        if (index < size) {
+            gridGraph.mark(index, FlaggedUnionFind.TOP);
+        }
+        if (index >= lastRowStart) {
+            gridGraph.mark(index, FlaggedUnionFind.BOTTOM);
         }
         
-        // Bottom connection required
-        if (row == size) {
-            gridGraphVirtualTopBottom.union(inputIndex, virtualBottomGridIndex);
+        final int col = index % size;
+        if (index >= size) {
+            connectIfOpen(index, index - size); // top
+        }
+        if (col != 0) {
+            connectIfOpen(index, index - 1); // left
+        }
+        if (index < lastRowStart) {
+            connectIfOpen(index, index + size); // bottom
+        }
+        if (col != size - 1) {
+            connectIfOpen(index, index + 1); // right
+        }
+        
+        // listeners are called once the grid is connected, so they see it full and may open grids themselves
+        if (becameFull != null) {
+            for (int fullIndex : becameFull) {
+                for (PercolationListener listener : listeners) {
+                    listener.siteFull(fullIndex);
+                }
+            }
+        }
+        if (!percolates && gridGraph.hasFlag(index, FlaggedUnionFind.TOP_BOTTOM)) {
+            percolates = true;
+            if (listeners != null) {
+                for (PercolationListener listener : listeners) {
+                    listener.percolated(openGridCount);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Blocks grid at index again. Only the component containing it is rebuilt : its grids are collected
+     * by flood fill from the open neighbours, reset in the union-find and connected again, so the cost
+     * is the size of that component instead of replaying every open.
+     * @param index : 1D index of grid 0 to n*n-1, not checked.
+     */
+    public void closeSite(int index) {
+        if (!isOpenSite(index)) {
+            return;
+        }
+        
+        final boolean wasFull = gridGraph.hasFlag(index, FlaggedUnionFind.TOP);
+        gridState[index >>> 6] &= ~(1L << index);
+        openGridCount--;
+        
+        final int memberCount = collectComponent(index);
+        gridGraph.reset(index);
+        for (int i = 0; i < memberCount; i++) {
+            gridGraph.reset(closeMembers[i]);
+        }
+        if (componentRing != null) {
+            componentRing[index] = index;
+            for (int i = 0; i < memberCount; i++) {
+                componentRing[closeMembers[i]] = closeMembers[i];
+            }
+        }
+        
+        // every edge inside the component is the top or left edge of one of its grids
+        for (int i = 0; i < memberCount; i++) {
+            final int member = closeMembers[i];
+            if (member < size) {
+                gridGraph.mark(member, FlaggedUnionFind.TOP);
+            }
+            if (member >= lastRowStart) {
+                gridGraph.mark(member, FlaggedUnionFind.BOTTOM);
+            }
+            if (member >= size) {
+                connectIfOpen(member, member - size);
+            }
+            if (member % size != 0) {
+                connectIfOpen(member, member - 1);
+            }
+        }
+        
+        if (blockedOrder != null && (notDrawnBits[index >>> 6] & (1L << index)) == 0) {
+            blockedOrder[blockedRemaining++] = index;
+            notDrawnBits[index >>> 6] |= 1L << index;
+        }
+        
+        if (changedGrids != null) {
+            addChangedGrid(index);
+            for (int i = 0; i < memberCount; i++) {
+                addChangedGrid(closeMembers[i]);
+            }
+        }
+        if (wasFull && listeners != null) {
+            notifySiteEmptied(index);
+            for (int i = 0; i < memberCount; i++) {
+                if (!isFullSite(closeMembers[i])) {
+                    notifySiteEmptied(closeMembers[i]);
+                }
+            }
+        }
+        
+        if (percolates) {
+            percolates = false;
+            for (int top = 0; top < size && !percolates; top++) {
+                percolates = isOpenSite(top) && gridGraph.hasFlag(top, FlaggedUnionFind.TOP_BOTTOM);
+            }
+        }
+    }
+    
+    /**
+     * Flood fills open grids reachable from the open neighbours of the closed grid at index
+     * i.e. its old component, into closeMembers.
+     * @param index : 1D index of the grid just closed.
+     * @return number of grids collected.
+     */
+    private int collectComponent(int index) {
+        if (visitEpoch == null) {
+            visitEpoch = new int[gridNumber];
+            closeMembers = new int[16];
+        }
+        if (++closeEpoch == Integer.MAX_VALUE) {
+            Arrays.fill(visitEpoch, 0);
+            closeEpoch = 1;
+        }
+        
+        int count = 0;
+        int current = index;
+        for (int head = -1; head < count; head++) {
+            if (head >= 0) {
+                current = closeMembers[head];
+            }
+            final int col = current % size;
+            for (int direction = 0; direction < 4; direction++) {
+                final int neighbourIndex;
+                if (direction == 0 && current >= size) {
+                    neighbourIndex = current - size;
+                }
+                else if (direction == 1 && col != 0) {
+                    neighbourIndex = current - 1;
+                }
+                else if (direction == 2 && current < lastRowStart) {
+                    neighbourIndex = current + size;
+                }
+                else if (direction == 3 && col != size - 1) {
+                    neighbourIndex = current + 1;
+                }
+                else {
+                    continue;
+                }
+                if (isOpenSite(neighbourIndex) && visitEpoch[neighbourIndex] != closeEpoch) {
+                    visitEpoch[neighbourIndex] = closeEpoch;
+                    if (count == closeMembers.length) {
+                        closeMembers = Arrays.copyOf(closeMembers, 2 * count);
+                    }
+                    closeMembers[count++] = neighbourIndex;
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * @param index : 1D index of grid 0 to n*n-1, not checked.
+     * @return true if grid is open.
+     */
+    public boolean isOpenSite(int index) {
+        return (gridState[index >>> 6] & (1L << index)) != 0;
+    }
+    
+    /**
+     * @param index : 1D index of grid 0 to n*n-1, not checked.
+     * @return true if grid is open and connected to top row.
+     */
+    public boolean isFullSite(int index) {
+        return isOpenSite(index) && gridGraph.hasFlag(index, FlaggedUnionFind.TOP);
+    }
+    
+    /**
+     * @param index : 1D index of grid 0 to n*n-1, not checked.
+     * @return number of open grids connected to index, 0 if it is blocked.
+     */
+    public int clusterSizeSite(int index) {
+        return isOpenSite(index) ? gridGraph.componentSize(index) : 0;
+    }
+    
+    private void connectIfOpen(int index, int neighbourIndex) {
+        if (!isOpenSite(neighbourIndex)) {
+            return;
+        }
+        if (componentRing != null) {
+            if (gridGraph.find(index) == gridGraph.find(neighbourIndex)) {
+                return;
+            }
+            // swapping successors of two grids in different cycles joins the cycles
+            final int next = componentRing[index];
+            componentRing[index] = componentRing[neighbourIndex];
+            componentRing[neighbourIndex] = next;
+        }
+        gridGraph.union(index, neighbourIndex);
+    }
+    
+//-----------------------------End Of flat index kernel------------------------------------
+    
+    /** blocks grid in (row, col) again, see closeSite.
+     * @param row : row of grid 1 to n
+     * @param col : col of grid 1 to n
+     * @throws IllegalArgumentException if input out of range
+     */
+    public void close(int row, int col) {
+        validate(row, col);
+        closeSite(convertRowColToIndex(row, col));
+    }
+    
+    /**
+     * Starts recording grids whose state changes i.e. opened or became full, see drainChangedSites.
+     * Costs one int per grid for component cycles, grids already open are linked in O(n^2) once.
+     */
+    public void enableChangeTracking() {
+        if (changedGrids != null) {
+            return;
+        }
+        linkComponentRing();
+        changedGrids = new int[16];
+        changedGridCount = 0;
+    }
+    
+    /**
+     * Registers listener for grids becoming full and for the system starting to percolate.
+     * Only changes after this call are reported, a newly full component costs its size.
+     * @param listener : receiver of the events.
+     * @throws IllegalArgumentException if listener is null.
+     */
+    public void addListener(PercolationListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Null percolation listener is not supported");
+        }
+        if (listeners == null) {
+            linkComponentRing();
+            listeners = new ArrayList<>(1);
+        }
+        listeners.add(listener);
+    }
+    
+    /**
+     * Links grids already open into component cycles in O(n^2) once.
+     */
+    private void linkComponentRing() {
+        if (componentRing != null) {
+            return;
+        }
+        componentRing = new int[gridNumber];
+        for (int index = 0; index < gridNumber; index++) {
+            componentRing[index] = index;
+        }
+        for (int index = 0; index < gridNumber; index++) {
+            final int root = gridGraph.find(index);
+            if (root != index && isOpenSite(index)) {
+                final int next = componentRing[root];
+                componentRing[root] = componentRing[index];
+                componentRing[index] = next;
+            }
+        }
+    }
+    
+    /**
+     * Passes 1D index of every grid opened or became full since the previous call, then forgets them.
+     * A grid may be passed more than once, e.g. opened and filled, its current state is what matters.
+     * @param consumer : receives 1D index (row - 1) * n + (col - 1).
+     * @throws IllegalStateException if enableChangeTracking was not called.
+     */
+    public void drainChangedSites(IntConsumer consumer) {
+        if (changedGrids == null) {
+            throw new IllegalStateException("Change tracking of percolation(" + size + ") is not enabled");
+        }
+        final int count = changedGridCount;
+        changedGridCount = 0;
+        for (int i = 0; i < count; i++) {
+            consumer.accept(changedGrids[i]);
+        }
+    }
+    
+    /**
+     * Records grid at index as opened and, when opening it connects top row to components which are
+     * not full yet, records every grid of those components. Called before index is connected, while
+     * the components can still be told apart.
+     * @param index : 1D index of the grid being opened.
+     * @return grids becoming full to be passed to listeners after the connection, null if none or no listeners.
+     */
+    private int[] recordChanges(int index) {
+        if (changedGrids != null) {
+            addChangedGrid(index);
+        }
+        
+        final int col = index % size;
+        boolean becomesFull = index < size;
+        // at most 4 distinct neighbour components, 0 to 4 of them not full
+        int notFullCount = 0;
+        final int[] notFullRoots = new int[4];
+        for (int direction = 0; direction < 4; direction++) {
+            final int neighbourIndex;
+            if (direction == 0 && index >= size) {
+                neighbourIndex = index - size;
+            }
+            else if (direction == 1 && col != 0) {
+                neighbourIndex = index - 1;
+            }
+            else if (direction == 2 && index < lastRowStart) {
+                neighbourIndex = index + size;
+            }
+            else if (direction == 3 && col != size - 1) {
+                neighbourIndex = index + 1;
+            }
+            else {
+                continue;
+            }
+            if (!isOpenSite(neighbourIndex)) {
+                continue;
+            }
+            final int root = gridGraph.find(neighbourIndex);
+            if (gridGraph.hasFlag(root, FlaggedUnionFind.TOP)) {
+                becomesFull = true;
+            }
+            else if (!contains(notFullRoots, notFullCount, root)) {
+                notFullRoots[notFullCount++] = root;
+            }
         }
-
-        gridState[row - 1][col - 1] = true;
-        openGridCount++;
         
-        checkAndConnect(inputIndex, row - 1, col); // top
-        checkAndConnect(inputIndex, row, col - 1); // left
-        checkAndConnect(inputIndex, row + 1, col); // bottom
-        checkAndConnect(inputIndex, row, col + 1); // right
+        if (!becomesFull) {
+            return null;
+        }
+        int[] becameFull = listeners != null ? new int[1 + 4 * notFullCount] : null;
+        int becameFullCount = 0;
+        if (becameFull != null) {
+            becameFull[becameFullCount++] = index;
+        }
+        for (int i = 0; i < notFullCount; i++) {
+            int member = notFullRoots[i];
+            do {
+                if (changedGrids != null) {
+                    addChangedGrid(member);
+                }
+                if (becameFull != null) {
+                    if (becameFullCount == becameFull.length) {
+                        becameFull = Arrays.copyOf(becameFull, 2 * becameFullCount);
+                    }
+                    becameFull[becameFullCount++] = member;
+                }
+                member = componentRing[member];
+            } while (member != notFullRoots[i]);
+        }
+        return becameFull == null ? null : Arrays.copyOf(becameFull, becameFullCount);
+    }
+    
+    private void notifySiteEmptied(int index) {
+        for (PercolationListener listener : listeners) {
+            listener.siteEmptied(index);
+        }
+    }
+    
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void addChangedGrid(int index) {
+        if (changedGridCount == changedGrids.length) {
+            changedGrids = Arrays.copyOf(changedGrids, 2 * changedGridCount);
+        }
+        changedGrids[changedGridCount++] = index;
     }
     
     /**
-     * Connects grid represented by srcIndex with grid represented by (dstRow, dstCol)
-     * @param srcIndex : index value of (srcRow, srcCol) pair which will union with (dstRow,dstCol) 
-     * @param dstRow : row of destination 
-     * @param dstCol : col of destination
+     * Opens a blocked grid chosen uniformly at random using StdRandom.
+     * @return 1D index (row - 1) * n + (col - 1) of the opened grid.
+     * @throws NoSuchElementException if every grid is already open.
      */
-    private void checkAndConnect(int srcIndex, int dstRow, int dstCol) {
-        if (isInGrid(dstRow, dstCol) && isOpen(dstRow, dstCol)) {
-            final int dstIndex = convertRowColToIndex(dstRow, dstCol);
-            gridGraphVirtualTop.union(srcIndex, dstIndex);
-            gridGraphVirtualTopBottom.union(srcIndex, dstIndex);
+    public int openRandomBlockedSite() {
+        return openRandomBlockedSite(StdRandom::uniform);
+    }
+    
+    /**
+     * Opens a blocked grid chosen uniformly at random. Blocked grids are drawn as a random permutation,
+     * so every call opens a grid instead of retrying on already open ones.
+     * @param uniform : returns uniform random int in [0, bound) for given bound e.g. SplittableRandom::nextInt.
+     * @return 1D index (row - 1) * n + (col - 1) of the opened grid.
+     * @throws NoSuchElementException if every grid is already open.
+     */
+    public int openRandomBlockedSite(IntUnaryOperator uniform) {
+        if (openGridCount == gridNumber) {
+            throw new NoSuchElementException("Every grid of percolation(" + size + ") is already open");
+        }
+        if (blockedOrder == null) {
+            blockedOrder = new int[gridNumber];
+            for (int i = 0; i < gridNumber; i++) {
+                blockedOrder[i] = i;
+            }
+            blockedRemaining = gridNumber;
+            notDrawnBits = new long[gridState.length];
+            Arrays.fill(notDrawnBits, -1L);
+        }
+        
+        while (true) {
+            final int slot = uniform.applyAsInt(blockedRemaining);
+            final int index = blockedOrder[slot];
+            blockedRemaining--;
+            blockedOrder[slot] = blockedOrder[blockedRemaining];
+            blockedOrder[blockedRemaining] = index;
+            notDrawnBits[index >>> 6] &= ~(1L << index);
+            
+            if (!isOpenSite(index)) {
+                openSite(index);
+                return index;
+            }
         }
     }
     
@@ -91,7 +540,7 @@ public class Percolation {
      */
     public boolean isOpen(int row, int col) {
         validate(row, col);
-        return gridState[row-1][col-1];
+        return isOpenSite(convertRowColToIndex(row, col));
     }
 
     /**
@@ -103,8 +552,18 @@ public class Percolation {
      */
     public boolean isFull(int row, int col) {
         validate(row, col);
-        return isOpen(row, col) &&
-               (gridGraphVirtualTop.find(virtualTopGridIndex) == gridGraphVirtualTop.find(convertRowColToIndex(row, col)));
+        return isFullSite(convertRowColToIndex(row, col));
+    }
+
+    /**
+     * @param row : row of grid 1 to n.
+     * @param col : col of grid 1 to n.
+     * @return number of open grids connected to (row, col), 0 if it is blocked.
+     * @throws IllegalArgumentException if input out of range.
+     */
+    public int clusterSize(int row, int col) {
+        validate(row, col);
+        return clusterSizeSite(convertRowColToIndex(row, col));
     }
 
     /**
@@ -118,17 +577,18 @@ public class Percolation {
      * @return if the grid array percolates i.e. top connects to bottom.
      */
     public boolean percolates() {
-        return gridGraphVirtualTopBottom.find(virtualTopGridIndex) == gridGraphVirtualTopBottom.find(virtualBottomGridIndex);
+        return percolates;
     }
     
     /**
-     * converts row,col value to 1D index representation
+     * converts row,col value to 1D index representation.
+     * Multiplication is done in long, constructor guarantees every valid index fits in int.
      * @param row : row of grid 1 to n.
      * @param col : col of grid 1 to n.
      * @return 1D index representation.
      */
     private int convertRowColToIndex(int row, int col) {
-        return (row - 1) * this.size + (col - 1);
+        return (int) ((long) (row - 1) * this.size + (col - 1));
     }
     
     /**
@@ -153,6 +613,111 @@ public class Percolation {
         return (row >= 1 && row <= size) && (col >= 1 && col <= size);
     }
     
+    /**
+     * Writes open grids, union-find and random opening order into a binary checkpoint through memory mapped
+     * regions. Change tracking and listeners are not part of the checkpoint.
+     * @param file : checkpoint path, replaced only when the whole checkpoint is written.
+     * @throws IOException if checkpoint can not be written.
+     */
+    public void checkpoint(Path file) throws IOException {
+        try (CheckpointFile checkpoint = CheckpointFile.create(file)) {
+            checkpoint.writeHeader(CHECKPOINT_MAGIC, CHECKPOINT_VERSION);
+            checkpoint.writeInt(size);
+            checkpoint.writeInt(openGridCount);
+            checkpoint.writeInt(percolates ? 1 : 0);
+            checkpoint.writeLongs(gridState);
+            gridGraph.writeTo(checkpoint);
+            if (blockedOrder == null) {
+                checkpoint.writeInt(-1);
+            }
+            else {
+                checkpoint.writeInt(blockedRemaining);
+                checkpoint.writeInts(blockedOrder);
+            }
+            checkpoint.commit();
+        }
+    }
+    
+    /**
+     * Reads a percolation written by checkpoint, in the time it takes to read n^2 * ~4.5 bytes
+     * instead of replaying every open.
+     * @param file : checkpoint path.
+     * @return percolation in the state it was checkpointed.
+     * @throws IOException if file can not be read or is not a percolation checkpoint.
+     */
+    public static Percolation restore(Path file) throws IOException {
+        try (CheckpointFile checkpoint = CheckpointFile.open(file)) {
+            checkpoint.readHeader(CHECKPOINT_MAGIC, CHECKPOINT_VERSION);
+            final int n = checkpoint.readInt();
+            if (n <= 0 || (long) n * n > MAX_GRID_NUMBER) {
+                throw new IOException(file + " has invalid percolation grid size : " + n);
+            }
+            final Percolation percolation = new Percolation(n);
+            percolation.openGridCount = checkpoint.readInt();
+            percolation.percolates = checkpoint.readInt() != 0;
+            checkpoint.readLongs(percolation.gridState);
+            percolation.gridGraph.readFrom(checkpoint);
+            final int blockedRemaining = checkpoint.readInt();
+            if (blockedRemaining >= 0) {
+                percolation.blockedOrder = new int[percolation.gridNumber];
+                percolation.blockedRemaining = blockedRemaining;
+                checkpoint.readInts(percolation.blockedOrder);
+                percolation.notDrawnBits = new long[percolation.gridState.length];
+                for (int i = 0; i < blockedRemaining; i++) {
+                    final int index = percolation.blockedOrder[i];
+                    percolation.notDrawnBits[index >>> 6] |= 1L << index;
+                }
+            }
+            return percolation;
+        }
+    }
+    
+    /**
+     * Labels every cluster of a complete snapshot at once (Hoshen-Kopelman) instead of calling open per grid.
+     * @param openGrids : n by n open state, openGrids[row - 1][col - 1].
+     * @return queryable cluster labeling of the snapshot.
+     * @throws IllegalArgumentException if snapshot is empty or not square.
+     */
+    public static PercolationSnapshot fromSnapshot(boolean[][] openGrids) {
+        return new PercolationSnapshot(openGrids, 1);
+    }
+    
+    /**
+     * Labels a complete snapshot with horizontal strips labeled in parallel and merged on strip boundaries.
+     * Result is exactly the same as fromSnapshot(openGrids), cluster ids included.
+     * @param openGrids : n by n open state, openGrids[row - 1][col - 1].
+     * @param threads : number of strips / worker threads.
+     * @return queryable cluster labeling of the snapshot.
+     * @throws IllegalArgumentException if snapshot is empty or not square, or threads <= 0.
+     */
+    public static PercolationSnapshot fromSnapshot(boolean[][] openGrids, int threads) {
+        return new PercolationSnapshot(openGrids, threads);
+    }
+    
+    /**
+     * Reads a snapshot in the test input format, grid size n followed by 0 based (row, col) pairs of open grids.
+     * @param in : input positioned at grid size.
+     * @return queryable cluster labeling of the snapshot.
+     * @throws IllegalArgumentException if grid size or a (row, col) pair is out of range.
+     */
+    public static PercolationSnapshot fromSnapshot(In in) {
+        final int n = in.readInt();
+        if (n <= 0) {
+            throw new IllegalArgumentException("Percolation grid size : " + n + " is <= 0");
+        }
+        final boolean[][] openGrids = new boolean[n][n];
+        while (!in.isEmpty()) {
+            final int row = in.readInt();
+            final int col = in.readInt();
+            if (row < 0 || row >= n || col < 0 || col >= n) {
+                throw new IllegalArgumentException("Row : " + (row + 1) + " Col : " + (col + 1)
+                                                   + " is not in percolation(" + n + ")");
+            }
+            openGrids[row][col] = true;
+        }
+        return fromSnapshot(openGrids);
+    }
+    
     // test client (optional)
     public static void main(String[] args) {
         Percolation p = new Percolation(1);
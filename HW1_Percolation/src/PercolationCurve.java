@@ -0,0 +1,174 @@
+import java.util.SplittableRandom;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Newman-Ziff sweep of percolation on n by n grids.
+ * Every realization opens all grids one by one in a random order and records, after k open grids,
+ *      - whether the grid percolates,
+ *      - size of the largest cluster.
+ * So one realization gives the whole curve for the cost of a single PercolationStats trial.
+ * Values for a fixed open probability p are the binomial convolution of the per k averages.
+ *
+ * @author anilk
+ */
+public class PercolationCurve {
+    // Binomial weights below this fraction of the running total are ignored.
+    private static final double NEGLIGIBLE_WEIGHT = 1e-16;
+
+    private final int gridNumber;
+    private final int realizations;
+    private final double[] percolationByOpenCount;
+    private final double[] largestClusterByOpenCount;
+
+    /**
+     * Sweeps realizations number of random opening orders on n-by-n grids.
+     * @param n : width and height of each percolation grid.
+     * @param realizations : number of independent sweeps.
+     * @param seed : base seed, realization i uses the same random stream as trial i of PercolationStats.
+     * @throws IllegalArgumentException if n or realizations is <= 0 or n * n does not fit in int
+     */
+    public PercolationCurve(int n, int realizations, long seed) {
+        if (n <= 0 || realizations <= 0 || (long) n * n >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Required n > 0 && n * n < 2^31 - 1 && realizations > 0 but input n : "
+                                               + n + " realizations :" + realizations);
+        }
+
+        this.gridNumber = n * n;
+        this.realizations = realizations;
+
+        // percolatedAt[k] : number of realizations which percolates first when k grids are open
+        final int[] percolatedAt = new int[gridNumber + 1];
+        final double[] largestSum = new double[gridNumber + 1];
+
+        for (int i = 0; i < realizations; i++) {
+            final SplittableRandom random = new SplittableRandom(PercolationStats.trialSeed(seed, i));
+            final Percolation experiment = new Percolation(n);
+            boolean percolated = false;
+            int largest = 0;
+            for (int k = 1; k <= gridNumber; k++) {
+                final int index = experiment.openRandomBlockedSite(random::nextInt);
+                largest = Math.max(largest, experiment.clusterSizeSite(index));
+                largestSum[k] += largest;
+                if (!percolated && experiment.percolates()) {
+                    percolated = true;
+                    percolatedAt[k]++;
+                }
+            }
+        }
+
+        percolationByOpenCount = new double[gridNumber + 1];
+        largestClusterByOpenCount = new double[gridNumber + 1];
+        int percolatedCount = 0;
+        for (int k = 0; k <= gridNumber; k++) {
+            percolatedCount += percolatedAt[k];
+            percolationByOpenCount[k] = (double) percolatedCount / realizations;
+            largestClusterByOpenCount[k] = largestSum[k] / realizations;
+        }
+    }
+
+    /**
+     * @param openCount : number of open grids 0 to n*n.
+     * @return fraction of realizations which percolate when openCount grids are open.
+     * @throws IllegalArgumentException if openCount out of range.
+     */
+    public double percolationProbabilityAt(int openCount) {
+        validate(openCount);
+        return percolationByOpenCount[openCount];
+    }
+
+    /**
+     * @param openCount : number of open grids 0 to n*n.
+     * @return mean size of the largest cluster when openCount grids are open.
+     * @throws IllegalArgumentException if openCount out of range.
+     */
+    public double largestClusterAt(int openCount) {
+        validate(openCount);
+        return largestClusterByOpenCount[openCount];
+    }
+
+    /**
+     * @param p : probability of a grid being open.
+     * @return probability that the system percolates when every grid is open with probability p.
+     * @throws IllegalArgumentException if p is not in [0, 1].
+     */
+    public double percolationProbability(double p) {
+        return convolve(percolationByOpenCount, p);
+    }
+
+    /**
+     * @param p : probability of a grid being open.
+     * @return mean size of the largest cluster when every grid is open with probability p.
+     * @throws IllegalArgumentException if p is not in [0, 1].
+     */
+    public double largestCluster(double p) {
+        return convolve(largestClusterByOpenCount, p);
+    }
+
+    /**
+     * @return number of realizations the curve is averaged over.
+     */
+    public int realizations() {
+        return realizations;
+    }
+
+    /**
+     * Sums byOpenCount[k] * C(N, k) p^k (1-p)^(N-k). Weights are built from the mode outwards
+     * relative to 1 and normalized at the end so that large N does not underflow.
+     * @param byOpenCount : value for every open count 0 to N.
+     * @param p : probability of a grid being open.
+     * @return binomial average of byOpenCount.
+     */
+    private double convolve(double[] byOpenCount, double p) {
+        if (!(p >= 0.0 && p <= 1.0)) {
+            throw new IllegalArgumentException("Probability : " + p + " is not in [0, 1]");
+        }
+        if (p == 0.0) {
+            return byOpenCount[0];
+        }
+        if (p == 1.0) {
+            return byOpenCount[gridNumber];
+        }
+
+        final int mode = (int) Math.min(gridNumber, Math.floor((gridNumber + 1) * p));
+        final double ratio = p / (1.0 - p);
+        double total = 1.0;
+        double sum = byOpenCount[mode];
+
+        double weight = 1.0;
+        for (int k = mode + 1; k <= gridNumber && weight >= NEGLIGIBLE_WEIGHT * total; k++) {
+            weight *= (double) (gridNumber - k + 1) / k * ratio;
+            total += weight;
+            sum += weight * byOpenCount[k];
+        }
+        weight = 1.0;
+        for (int k = mode - 1; k >= 0 && weight >= NEGLIGIBLE_WEIGHT * total; k--) {
+            weight *= (double) (k + 1) / (gridNumber - k) / ratio;
+            total += weight;
+            sum += weight * byOpenCount[k];
+        }
+        return sum / total;
+    }
+
+    private void validate(int openCount) {
+        if (openCount < 0 || openCount > gridNumber) {
+            throw new IllegalArgumentException("Open count : " + openCount + " is not in [0, " + gridNumber + "]");
+        }
+    }
+
+    // test client, prints the curve : n realizations [seed] [steps]
+    public static void main(String[] args) {
+        final int n = Integer.parseInt(args[0]);
+        final int realizations = Integer.parseInt(args[1]);
+        final long seed = args.length >= 3 ? Long.parseLong(args[2]) : System.nanoTime();
+        final int steps = args.length >= 4 ? Integer.parseInt(args[3]) : 20;
+
+        PercolationCurve curve = new PercolationCurve(n, realizations, seed);
+        StdOut.println("p        percolates   largest cluster");
+        for (int i = 0; i <= steps; i++) {
+            double p = (double) i / steps;
+            StdOut.printf("%.4f   %.6f     %.6f%n", p, curve.percolationProbability(p),
+                          curve.largestCluster(p) / ((double) n * n));
+        }
+    }
+}
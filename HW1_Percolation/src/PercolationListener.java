@@ -0,0 +1,28 @@
+/**
+ * Receives state changes of a Percolation, see Percolation.addListener.
+ * Grids are passed as 1D index (row - 1) * n + (col - 1).
+ *
+ * @author anilk
+ */
+public interface PercolationListener {
+
+    /**
+     * Called once for every grid when it becomes full i.e. connected to top row, again after siteEmptied.
+     * @param index : 1D index of the grid.
+     */
+    void siteFull(int index);
+
+    /**
+     * Called once for every grid which stops being full because of a close, the closed grid included.
+     * Default does nothing for listeners which only open grids.
+     * @param index : 1D index of the grid.
+     */
+    default void siteEmptied(int index) {
+    }
+
+    /**
+     * Called by the open call which makes the system percolate, again after a close stopped percolation.
+     * @param openSites : number of open grids at that moment.
+     */
+    void percolated(int openSites);
+}
@@ -0,0 +1,252 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Opt-in counters of Percolation, FlaggedUnionFind and PercolationStats hot paths.
+ * Enabled with -Dpercolation.metrics=true. ENABLED is a static final constant so when it is false
+ * the JIT removes every guarded call and the hot paths cost the same as without metrics.
+ * Counters are LongAdders so that parallel trials do not contend on them.
+ *
+ *  opens, redundantOpens : open calls on blocked / already open grids.
+ *  unions : unions which merged two components.
+ *  finds : find calls, with a histogram of path lengths (hops to the root). Bucket i counts
+ *          lengths in [2^(i-1), 2^i), bucket 0 counts length 0.
+ *  trials, trialNanos : finished PercolationStats trials and their wall time.
+ *
+ * @author anilk
+ */
+public final class PercolationMetrics implements PercolationMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("percolation.metrics");
+
+    private static final int PATH_BUCKETS = 33;
+    private static final LongAdder OPENS = new LongAdder();
+    private static final LongAdder REDUNDANT_OPENS = new LongAdder();
+    private static final LongAdder UNIONS = new LongAdder();
+    private static final LongAdder FINDS = new LongAdder();
+    private static final LongAdder PATH_LENGTH_SUM = new LongAdder();
+    private static final LongAdder[] PATH_LENGTHS = new LongAdder[PATH_BUCKETS];
+    private static final LongAdder TRIALS = new LongAdder();
+    private static final LongAdder TRIAL_NANOS = new LongAdder();
+    private static volatile long maxPathLength = 0;
+
+    static {
+        for (int i = 0; i < PATH_BUCKETS; i++) {
+            PATH_LENGTHS[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Point in time copy of the counters.
+     */
+    public static final class Snapshot {
+        private final long opens;
+        private final long redundantOpens;
+        private final long unions;
+        private final long finds;
+        private final long pathLengthSum;
+        private final long maxPathLength;
+        private final long[] pathLengthHistogram;
+        private final long trials;
+        private final long trialNanos;
+
+        private Snapshot() {
+            opens = OPENS.sum();
+            redundantOpens = REDUNDANT_OPENS.sum();
+            unions = UNIONS.sum();
+            finds = FINDS.sum();
+            pathLengthSum = PATH_LENGTH_SUM.sum();
+            maxPathLength = PercolationMetrics.maxPathLength;
+            pathLengthHistogram = new long[PATH_BUCKETS];
+            for (int i = 0; i < PATH_BUCKETS; i++) {
+                pathLengthHistogram[i] = PATH_LENGTHS[i].sum();
+            }
+            trials = TRIALS.sum();
+            trialNanos = TRIAL_NANOS.sum();
+        }
+
+        public long opens() {
+            return opens;
+        }
+
+        public long redundantOpens() {
+            return redundantOpens;
+        }
+
+        public long unions() {
+            return unions;
+        }
+
+        public long finds() {
+            return finds;
+        }
+
+        public long maxPathLength() {
+            return maxPathLength;
+        }
+
+        public double meanPathLength() {
+            return finds == 0 ? 0.0 : (double) pathLengthSum / finds;
+        }
+
+        // bucket i counts path lengths in [2^(i-1), 2^i), bucket 0 counts length 0
+        public long[] pathLengthHistogram() {
+            return pathLengthHistogram.clone();
+        }
+
+        public long trials() {
+            return trials;
+        }
+
+        public double meanTrialMillis() {
+            return trials == 0 ? 0.0 : trialNanos / 1e6 / trials;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder result = new StringBuilder();
+            result.append("opens                   = ").append(opens).append('\n');
+            result.append("redundant opens         = ").append(redundantOpens).append('\n');
+            result.append("unions                  = ").append(unions).append('\n');
+            result.append("finds                   = ").append(finds).append('\n');
+            result.append("mean / max path length  = ").append(meanPathLength()).append(" / ").append(maxPathLength).append('\n');
+            result.append("path length histogram   =");
+            for (int i = 0; i < PATH_BUCKETS; i++) {
+                if (pathLengthHistogram[i] != 0) {
+                    result.append(' ').append(i == 0 ? "0" : "<" + (1L << i)).append(':').append(pathLengthHistogram[i]);
+                }
+            }
+            result.append('\n');
+            result.append("trials, mean trial ms   = ").append(trials).append(", ").append(meanTrialMillis());
+            return result.toString();
+        }
+    }
+
+    // instances only serve JMX
+    private PercolationMetrics() {
+    }
+
+    /**
+     * @return copy of the counters, all zero if metrics are not enabled.
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Zeroes every counter, e.g. between runs of different n.
+     */
+    public static void resetCounters() {
+        OPENS.reset();
+        REDUNDANT_OPENS.reset();
+        UNIONS.reset();
+        FINDS.reset();
+        PATH_LENGTH_SUM.reset();
+        for (LongAdder bucket : PATH_LENGTHS) {
+            bucket.reset();
+        }
+        TRIALS.reset();
+        TRIAL_NANOS.reset();
+        maxPathLength = 0;
+    }
+
+    /**
+     * Registers the counters as MXBean "Percolation:type=Metrics" on the platform MBean server.
+     * @throws IllegalStateException if registration fails, e.g. it is already registered.
+     */
+    public static void registerMBean() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new PercolationMetrics(), new ObjectName("Percolation:type=Metrics"));
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("Percolation metrics MBean can not be registered", e);
+        }
+    }
+
+    static void open(boolean redundant) {
+        if (redundant) {
+            REDUNDANT_OPENS.increment();
+        }
+        else {
+            OPENS.increment();
+        }
+    }
+
+    static void union() {
+        UNIONS.increment();
+    }
+
+    static void find(int pathLength) {
+        FINDS.increment();
+        PATH_LENGTH_SUM.add(pathLength);
+        PATH_LENGTHS[32 - Integer.numberOfLeadingZeros(pathLength)].increment();
+        if (pathLength > maxPathLength) {
+            // racy max is fine, it is only used for reporting
+            maxPathLength = pathLength;
+        }
+    }
+
+    static void trial(long nanos) {
+        TRIALS.increment();
+        TRIAL_NANOS.add(nanos);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public long getOpens() {
+        return OPENS.sum();
+    }
+
+    @Override
+    public long getRedundantOpens() {
+        return REDUNDANT_OPENS.sum();
+    }
+
+    @Override
+    public long getUnions() {
+        return UNIONS.sum();
+    }
+
+    @Override
+    public long getFinds() {
+        return FINDS.sum();
+    }
+
+    @Override
+    public long getMaxPathLength() {
+        return maxPathLength;
+    }
+
+    @Override
+    public double getMeanPathLength() {
+        return snapshot().meanPathLength();
+    }
+
+    @Override
+    public long[] getPathLengthHistogram() {
+        return snapshot().pathLengthHistogram();
+    }
+
+    @Override
+    public long getTrials() {
+        return TRIALS.sum();
+    }
+
+    @Override
+    public double getMeanTrialMillis() {
+        return snapshot().meanTrialMillis();
+    }
+
+    @Override
+    public void reset() {
+        resetCounters();
+    }
+}
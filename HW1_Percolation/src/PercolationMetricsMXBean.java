@@ -0,0 +1,28 @@
+/**
+ * JMX view of PercolationMetrics, registered by PercolationMetrics.registerMBean.
+ *
+ * @author anilk
+ */
+public interface PercolationMetricsMXBean {
+    boolean isEnabled();
+
+    long getOpens();
+
+    long getRedundantOpens();
+
+    long getUnions();
+
+    long getFinds();
+
+    long getMaxPathLength();
+
+    double getMeanPathLength();
+
+    long[] getPathLengthHistogram();
+
+    long getTrials();
+
+    double getMeanTrialMillis();
+
+    void reset();
+}
@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Local HTTP server running seeded PercolationStats experiments, bound to the loopback address only.
+ *
+ *      GET /stats?n=200&trials=100&seed=42
+ *      {"n":200,"trials":100,"seed":42,"mean":...,"stddev":...,"confidenceLo":...,"confidenceHi":...}
+ *
+ * Seeded results only depend on (n, trials, seed), so they are memoized at three levels:
+ *      cache : in memory LRU of finished results.
+ *      store : directory of PercolationStats.resumable checkpoints, a finished checkpoint is read back
+ *              without running any trial and an interrupted one continues where it stopped.
+ *      inFlight : running computations, concurrent duplicate requests wait on the same future.
+ * Experiments run on a fixed pool of workers, each one single threaded, with at most MAX_QUEUED_EXPERIMENTS
+ * waiting for a worker. Further requests are answered 503, n and trials are capped by MAX_N and MAX_TRIALS,
+ * so a client can not queue unbounded work.
+ *
+ * @author anilk
+ */
+public class PercolationService {
+    // Trials between checkpoint writes of a running experiment.
+    private static final int CHECKPOINT_INTERVAL = 100;
+    // Experiments accepted while every worker is busy, more are rejected.
+    private static final int MAX_QUEUED_EXPERIMENTS = 64;
+    // Largest grid size and trial count of a single experiment.
+    private static final int MAX_N = 2048;
+    private static final int MAX_TRIALS = 100000;
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Path store;
+    private final Map<String, PercolationStats> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<PercolationStats>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the service, see start.
+     * @param port : loopback port to listen on, 0 picks a free one.
+     * @param store : directory of result checkpoints, created if missing.
+     * @param workerCount : number of experiments running at the same time.
+     * @param cacheSize : number of results kept in memory.
+     * @throws IllegalArgumentException if workerCount or cacheSize is <= 0
+     * @throws IOException if store can not be created or port can not be bound.
+     */
+    public PercolationService(int port, Path store, int workerCount, int cacheSize) throws IOException {
+        if (workerCount <= 0 || cacheSize <= 0) {
+            throw new IllegalArgumentException("Required workerCount > 0 && cacheSize > 0 but input workerCount : "
+                                               + workerCount + " cacheSize : " + cacheSize);
+        }
+
+        this.store = Files.createDirectories(store);
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                                              new ArrayBlockingQueue<>(MAX_QUEUED_EXPERIMENTS));
+        this.cache = new LinkedHashMap<String, PercolationStats>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PercolationStats> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/stats", this::handleStats);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and experiments. Queued experiments are dropped, running ones are not
+     * interrupted and keep writing checkpoints until they finish or the process exits. Futures of both
+     * complete exceptionally with CancellationException, a restarted service continues them from the store.
+     */
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+        for (Map.Entry<String, CompletableFuture<PercolationStats>> entry : inFlight.entrySet()) {
+            inFlight.remove(entry.getKey(), entry.getValue());
+            entry.getValue().completeExceptionally(new CancellationException("Percolation service is stopped"));
+        }
+    }
+
+    /**
+     * @return port the service listens on.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns statistics of the seeded experiment, computing it only if neither cache nor store has it
+     * and no identical experiment is already running.
+     * @param n : width and height of each percolation grid.
+     * @param trials : number of independent trials.
+     * @param seed : base seed of the per trial random streams.
+     * @return future statistics, completed exceptionally with IllegalArgumentException for invalid input or
+     *         n > MAX_N or trials > MAX_TRIALS, RejectedExecutionException if MAX_QUEUED_EXPERIMENTS are waiting,
+     *         UncheckedIOException if the store fails, or CancellationException if the service is stopped.
+     */
+    public CompletableFuture<PercolationStats> submit(int n, int trials, long seed) {
+        if (n > MAX_N || trials > MAX_TRIALS) {
+            final CompletableFuture<PercolationStats> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new IllegalArgumentException("Required n <= " + MAX_N + " && trials <= "
+                                                                        + MAX_TRIALS + " but input n : " + n
+                                                                        + " trials : " + trials));
+            return rejected;
+        }
+        final String key = n + "-" + trials + "-" + seed;
+        synchronized (cache) {
+            final PercolationStats cached = cache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        final CompletableFuture<PercolationStats> result = new CompletableFuture<>();
+        final CompletableFuture<PercolationStats> running = inFlight.putIfAbsent(key, result);
+        if (running != null) {
+            return running;
+        }
+
+        try {
+            CompletableFuture.supplyAsync(() -> compute(key, n, trials, seed), workers).whenComplete((stats, failure) -> {
+                // cache before leaving inFlight, so a duplicate request always finds one of them
+                if (stats != null) {
+                    synchronized (cache) {
+                        cache.put(key, stats);
+                    }
+                }
+                inFlight.remove(key, result);
+                if (stats != null) {
+                    result.complete(stats);
+                }
+                else {
+                    result.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            inFlight.remove(key, result);
+            result.completeExceptionally(new RejectedExecutionException("Percolation service is busy or stopped", e));
+        }
+        return result;
+    }
+
+    private PercolationStats compute(String key, int n, int trials, long seed) {
+        synchronized (cache) {
+            // finished between the cache miss of submit and registration in inFlight
+            final PercolationStats cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        try {
+            return PercolationStats.resumable(n, trials, seed, 1, store.resolve(key + ".stats"), CHECKPOINT_INTERVAL);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Responds asynchronously, so the dispatcher thread never waits for an experiment.
+     */
+    private void handleStats(HttpExchange exchange) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("only GET is supported"));
+            return;
+        }
+
+        final int n;
+        final int trials;
+        final long seed;
+        try {
+            final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            n = Integer.parseInt(required(query, "n"));
+            trials = Integer.parseInt(required(query, "trials"));
+            seed = Long.parseLong(required(query, "seed"));
+        }
+        catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+            return;
+        }
+
+        submit(n, trials, seed).whenComplete((stats, failure) -> {
+            if (stats != null) {
+                respond(exchange, 200, toJson(n, trials, seed, stats));
+                return;
+            }
+            final Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            final int status = cause instanceof IllegalArgumentException ? 400
+                               : cause instanceof RejectedExecutionException ? 503 : 500;
+            respond(exchange, status, error(String.valueOf(cause.getMessage())));
+        });
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        final Map<String, String> result = new HashMap<>();
+        if (rawQuery == null) {
+            return result;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            final int split = parameter.indexOf('=');
+            if (split > 0) {
+                result.put(decode(parameter.substring(0, split)), decode(parameter.substring(split + 1)));
+            }
+        }
+        return result;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        final String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing query parameter : " + name);
+        }
+        return value;
+    }
+
+    private static String toJson(int n, int trials, long seed, PercolationStats stats) {
+        return "{\"n\":" + n + ",\"trials\":" + trials + ",\"seed\":" + seed
+               + ",\"mean\":" + jsonNumber(stats.mean())
+               + ",\"stddev\":" + jsonNumber(stats.stddev())
+               + ",\"confidenceLo\":" + jsonNumber(stats.confidenceLo())
+               + ",\"confidenceHi\":" + jsonNumber(stats.confidenceHi()) + "}";
+    }
+
+    // JSON has no NaN, e.g. stddev of a single trial
+    private static String jsonNumber(double value) {
+        return Double.isNaN(value) ? "null" : Double.toString(value);
+    }
+
+    private static String error(String message) {
+        final StringBuilder json = new StringBuilder("{\"error\":\"");
+        for (int i = 0; i < message.length(); i++) {
+            final char c = message.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                // control characters are not allowed in JSON strings
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                json.append(c);
+            }
+        }
+        return json.append("\"}").toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        catch (IOException e) {
+            // client is gone, result is still cached for the next request
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    // runs the service until the process is killed : port storeDirectory [workers] [cacheSize]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int port = Integer.parseInt(args[0]);
+        final Path store = Paths.get(args[1]);
+        final int workerCount = args.length >= 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        final int cacheSize = args.length >= 4 ? Integer.parseInt(args[3]) : 1024;
+
+        PercolationService service = new PercolationService(port, store, workerCount, cacheSize);
+        service.start();
+        StdOut.println("Listening on http://localhost:" + service.port() + "/stats?n=&trials=&seed=");
+        Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+        service.workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+}
@@ -0,0 +1,380 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cluster labeling of a complete open / blocked grid snapshot, built by Percolation.fromSnapshot.
+ * Uses Hoshen-Kopelman instead of opening grids one by one. Grid is split into horizontal strips
+ * which are labeled independently, so strips can run on their own threads:
+ *      - one raster pass per strip gives every open grid the label of its top or left neighbour in the strip,
+ *        or a new label, and records label equivalences in a small union-find table of the strip,
+ *      - strip labels are resolved to local cluster numbers in raster order with their sizes and top / bottom contact,
+ *      - a sequential pass unions local clusters over strip boundary rows; the smallest global label
+ *        (earliest in raster order) is always the root so cluster ids do not depend on strip count,
+ *      - strips replace local numbers with cluster ids 1 to clusterCount() numbered in raster order.
+ * Sequential labeling is the single strip case, so results are the same for every thread count.
+ *
+ * @author anilk
+ */
+public class PercolationSnapshot {
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+    private static final byte TOP_BOTTOM = TOP | BOTTOM;
+
+    /**
+     *  clusterOfGrid : cluster id of every grid in 1D index, 0 if grid is blocked.
+     *  clusterSize : number of grids in cluster id, index 0 is unused.
+     *  clusterFlags : TOP / BOTTOM contact of cluster id, index 0 is unused.
+     */
+    private final int size;
+    private final int[] clusterOfGrid;
+    private final int[] clusterSize;
+    private final byte[] clusterFlags;
+    private final boolean percolates;
+
+    /**
+     * Rows [fromRow, toRow) of the snapshot with their local labeling.
+     *  labelParent : union-find table of provisional labels, 0 is blocked.
+     *  localSize, localFlags : size and contact of local cluster numbers 1 to localCount.
+     *  offset : number of local clusters in the strips above, local number + offset is the global label.
+     */
+    private static final class Strip {
+        private final int fromRow;
+        private final int toRow;
+        private int[] labelParent;
+        private int localCount;
+        private int[] localSize;
+        private byte[] localFlags;
+        private int offset;
+
+        private Strip(int fromRow, int toRow) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        /**
+         * Labels open grids of the strip with local cluster numbers in raster order.
+         * @param openGrids : snapshot.
+         * @param labels : grid labels in 1D index, only rows of this strip are written.
+         */
+        private void label(boolean[][] openGrids, int[] labels) {
+            final int n = openGrids.length;
+            labelParent = new int[n + 1];
+            int labelCount = 0;
+            for (int row = fromRow; row < toRow; row++) {
+                for (int col = 0; col < n; col++) {
+                    if (!openGrids[row][col]) {
+                        continue;
+                    }
+                    final int index = row * n + col;
+                    final int up = row > fromRow ? labels[index - n] : 0;
+                    final int left = col > 0 ? labels[index - 1] : 0;
+                    if (up == 0 && left == 0) {
+                        labelCount++;
+                        if (labelCount == labelParent.length) {
+                            labelParent = Arrays.copyOf(labelParent, 2 * labelParent.length);
+                        }
+                        labelParent[labelCount] = labelCount;
+                        labels[index] = labelCount;
+                    }
+                    else if (up == 0 || left == 0) {
+                        labels[index] = up + left;
+                    }
+                    else {
+                        labels[index] = unionLabels(up, left);
+                    }
+                }
+            }
+
+            final int[] localOfLabel = new int[labelCount + 1];
+            localSize = new int[labelCount + 1];
+            localFlags = new byte[labelCount + 1];
+            for (int index = fromRow * n; index < toRow * n; index++) {
+                if (labels[index] == 0) {
+                    continue;
+                }
+                final int root = findLabel(labels[index]);
+                if (localOfLabel[root] == 0) {
+                    localOfLabel[root] = ++localCount;
+                }
+                final int local = localOfLabel[root];
+                labels[index] = local;
+                localSize[local]++;
+                if (index < n) {
+                    localFlags[local] |= TOP;
+                }
+                if (index >= (n - 1) * n) {
+                    localFlags[local] |= BOTTOM;
+                }
+            }
+            labelParent = null;
+        }
+
+        /**
+         * Replaces local cluster numbers of the strip with final cluster ids.
+         * @param labels : grid labels in 1D index.
+         * @param clusterOfGlobal : final cluster id of every global label.
+         * @param n : grid size.
+         */
+        private void relabel(int[] labels, int[] clusterOfGlobal, int n) {
+            for (int index = fromRow * n; index < toRow * n; index++) {
+                if (labels[index] != 0) {
+                    labels[index] = clusterOfGlobal[labels[index] + offset];
+                }
+            }
+        }
+
+        /**
+         * Merges two label trees, smaller label becomes the root.
+         * @return root of the merged labels.
+         */
+        private int unionLabels(int first, int second) {
+            final int firstRoot = findLabel(first);
+            final int secondRoot = findLabel(second);
+            final int root = Math.min(firstRoot, secondRoot);
+            labelParent[firstRoot] = root;
+            labelParent[secondRoot] = root;
+            return root;
+        }
+
+        private int findLabel(int label) {
+            while (labelParent[label] != label) {
+                labelParent[label] = labelParent[labelParent[label]];
+                label = labelParent[label];
+            }
+            return label;
+        }
+    }
+
+    /**
+     * Labels clusters of the snapshot.
+     * @param openGrids : n by n open state, openGrids[row - 1][col - 1].
+     * @param threads : number of strips labeled in parallel, 1 labels on the calling thread.
+     * @throws IllegalArgumentException if snapshot is empty or not square, or threads <= 0.
+     */
+    PercolationSnapshot(final boolean[][] openGrids, int threads) {
+        size = validateSnapshot(openGrids);
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Required threads > 0 but input threads : " + threads);
+        }
+        clusterOfGrid = new int[size * size];
+
+        final int stripCount = Math.min(threads, size);
+        final Strip[] strips = new Strip[stripCount];
+        for (int i = 0; i < stripCount; i++) {
+            strips[i] = new Strip((int) ((long) size * i / stripCount), (int) ((long) size * (i + 1) / stripCount));
+        }
+
+        final ExecutorService executor = stripCount == 1 ? null : Executors.newFixedThreadPool(stripCount);
+        try {
+            forEachStrip(executor, strips, strip -> strip.label(openGrids, clusterOfGrid));
+
+            // global labels : local number + offset of the strip
+            int globalCount = 0;
+            for (Strip strip : strips) {
+                strip.offset = globalCount;
+                globalCount += strip.localCount;
+            }
+            final int[] globalParent = new int[globalCount + 1];
+            for (int label = 0; label <= globalCount; label++) {
+                globalParent[label] = label;
+            }
+            for (int i = 1; i < stripCount; i++) {
+                final int upperRow = strips[i].fromRow - 1;
+                final int lowerRow = strips[i].fromRow;
+                for (int col = 0; col < size; col++) {
+                    if (openGrids[upperRow][col] && openGrids[lowerRow][col]) {
+                        unionGlobal(globalParent,
+                                    clusterOfGrid[upperRow * size + col] + strips[i - 1].offset,
+                                    clusterOfGrid[lowerRow * size + col] + strips[i].offset);
+                    }
+                }
+            }
+
+            // roots are the smallest label of their cluster, so increasing labels meet roots in raster order
+            final int[] clusterOfGlobal = new int[globalCount + 1];
+            final int[] sizes = new int[globalCount + 1];
+            final byte[] flags = new byte[globalCount + 1];
+            int clusterCount = 0;
+            for (Strip strip : strips) {
+                for (int local = 1; local <= strip.localCount; local++) {
+                    final int label = local + strip.offset;
+                    final int root = findGlobal(globalParent, label);
+                    if (root == label) {
+                        clusterOfGlobal[label] = ++clusterCount;
+                    }
+                    final int cluster = clusterOfGlobal[root];
+                    clusterOfGlobal[label] = cluster;
+                    sizes[cluster] += strip.localSize[local];
+                    flags[cluster] |= strip.localFlags[local];
+                }
+                strip.localSize = null;
+                strip.localFlags = null;
+            }
+
+            forEachStrip(executor, strips, strip -> strip.relabel(clusterOfGrid, clusterOfGlobal, size));
+
+            clusterSize = Arrays.copyOf(sizes, clusterCount + 1);
+            clusterFlags = Arrays.copyOf(flags, clusterCount + 1);
+        }
+        finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        boolean anyPercolates = false;
+        for (int cluster = 1; cluster < clusterFlags.length; cluster++) {
+            anyPercolates |= clusterFlags[cluster] == TOP_BOTTOM;
+        }
+        percolates = anyPercolates;
+    }
+
+    private interface StripTask {
+        void run(Strip strip);
+    }
+
+    /**
+     * Runs task for every strip, on the calling thread if executor is null.
+     */
+    private static void forEachStrip(ExecutorService executor, Strip[] strips, StripTask task) {
+        if (executor == null) {
+            for (Strip strip : strips) {
+                task.run(strip);
+            }
+            return;
+        }
+        final List<Future<?>> workers = new ArrayList<>(strips.length);
+        for (Strip strip : strips) {
+            workers.add(executor.submit(() -> task.run(strip)));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while labeling percolation snapshot", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Labeling percolation snapshot failed", e.getCause());
+        }
+    }
+
+    /**
+     * Merges two global label trees, smaller label becomes the root.
+     */
+    private static void unionGlobal(int[] globalParent, int first, int second) {
+        final int firstRoot = findGlobal(globalParent, first);
+        final int secondRoot = findGlobal(globalParent, second);
+        final int root = Math.min(firstRoot, secondRoot);
+        globalParent[firstRoot] = root;
+        globalParent[secondRoot] = root;
+    }
+
+    private static int findGlobal(int[] globalParent, int label) {
+        while (globalParent[label] != label) {
+            globalParent[label] = globalParent[globalParent[label]];
+            label = globalParent[label];
+        }
+        return label;
+    }
+
+    private static int validateSnapshot(boolean[][] openGrids) {
+        if (openGrids == null || openGrids.length == 0) {
+            throw new IllegalArgumentException("Percolation snapshot is empty");
+        }
+        final int n = openGrids.length;
+        if ((long) n * n > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Percolation snapshot size : " + n + " is too big");
+        }
+        for (int row = 0; row < n; row++) {
+            if (openGrids[row] == null || openGrids[row].length != n) {
+                throw new IllegalArgumentException("Percolation snapshot row : " + (row + 1) + " is not of length " + n);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @param row : row of grid 1 to n
+     * @param col : col of grid 1 to n
+     * @return true if grid is open.
+     * @throws IllegalArgumentException if input out of range
+     */
+    public boolean isOpen(int row, int col) {
+        return clusterId(row, col) != 0;
+    }
+
+    /**
+     * @param row : row of grid 1 to n
+     * @param col : col of grid 1 to n
+     * @return true if grid is connected to top row.
+     * @throws IllegalArgumentException if input out of range
+     */
+    public boolean isFull(int row, int col) {
+        final int cluster = clusterId(row, col);
+        return cluster != 0 && (clusterFlags[cluster] & TOP) != 0;
+    }
+
+    /**
+     * @return if the grid array percolates i.e. top connects to bottom.
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * @return number of open grids.
+     */
+    public int numberOfOpenSites() {
+        int result = 0;
+        for (int cluster = 1; cluster < clusterSize.length; cluster++) {
+            result += clusterSize[cluster];
+        }
+        return result;
+    }
+
+    /**
+     * @return number of clusters.
+     */
+    public int clusterCount() {
+        return clusterSize.length - 1;
+    }
+
+    /**
+     * @param row : row of grid 1 to n
+     * @param col : col of grid 1 to n
+     * @return cluster id 1 to clusterCount() of the grid in raster order, 0 if grid is blocked.
+     * @throws IllegalArgumentException if input out of range
+     */
+    public int clusterId(int row, int col) {
+        if (row < 1 || row > size || col < 1 || col > size) {
+            throw new IllegalArgumentException("Row : " + row + " Col : " + col + " is not in snapshot(" + size + ")");
+        }
+        return clusterOfGrid[(row - 1) * size + (col - 1)];
+    }
+
+    /**
+     * @param row : row of grid 1 to n
+     * @param col : col of grid 1 to n
+     * @return number of grids in the cluster of (row, col), 0 if grid is blocked.
+     * @throws IllegalArgumentException if input out of range
+     */
+    public int clusterSize(int row, int col) {
+        final int cluster = clusterId(row, col);
+        return cluster == 0 ? 0 : clusterSize[cluster];
+    }
+
+    /**
+     * @return sizes of clusters, element i is the size of cluster id i + 1.
+     */
+    public int[] clusterSizes() {
+        return Arrays.copyOfRange(clusterSize, 1, clusterSize.length);
+    }
+}
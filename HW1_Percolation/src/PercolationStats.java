@@ -1,10 +1,41 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
 
 public class PercolationStats {
     private static final double CONF_CONST = 1.96;
-    private final double[] results;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    // Adaptive mode does not trust the normal approximation of the confidence interval before this many trials.
+    private static final int MIN_ADAPTIVE_TRIALS = 30;
+    // Adaptive mode runs trials in batches of this size and checks the stopping rule between them.
+    private static final int ADAPTIVE_BATCH = 64;
+    // "PSTA" and layout version of checkpoint files.
+    private static final int CHECKPOINT_MAGIC = 0x50535441;
+    private static final int CHECKPOINT_VERSION = 1;
+    // Trials between flushes of a trial result log.
+    private static final int LOG_FLUSH_INTERVAL = 100;
+    
+    /**
+     * Results are not kept, they are streamed into Welford accumulator:
+     *  trialCount : number of accumulated trials.
+     *  runningMean : mean of accumulated trials.
+     *  squaredDiffSum : sum of squared differences from the running mean.
+     */
+    private int trialCount = 0;
+    private double runningMean = 0.0;
+    private double squaredDiffSum = 0.0;
     
     // perform independent trials on an n-by-n grid
     public PercolationStats(int n, int trials) {
@@ -12,58 +43,397 @@ public class PercolationStats {
             throw new IllegalArgumentException("Required n > 0 && trials > 0 but input n : "+ n + " trials :" + trials);
         }
         
-        final int gridNumber = n * n;
-        
-        results = new double[trials];
+        final double gridNumber = (double) n * n;
         
         for (int i = 0; i < trials; i++) {
+            final long start = PercolationMetrics.ENABLED ? System.nanoTime() : 0L;
             Percolation experiment = new Percolation(n);
             while (!experiment.percolates()) {
-                int rowRand = StdRandom.uniform(1, n + 1);
-                int colRand = StdRandom.uniform(1, n + 1);
-                experiment.open(rowRand, colRand);
+                experiment.openRandomBlockedSite(StdRandom::uniform);
+            }
+            if (PercolationMetrics.ENABLED) {
+                PercolationMetrics.trial(System.nanoTime() - start);
             }
             
-            results[i] = (double) experiment.numberOfOpenSites() / gridNumber;
+            accumulate((double) experiment.numberOfOpenSites() / gridNumber);
         }
         
     }
 
+    /**
+     * Performs independent trials on an n-by-n grid using a pool of worker threads.
+     * Every trial owns its Percolation instance and a random stream derived only from
+     * (seed, trial index), so results are the same for a given seed whatever the thread count is.
+     * @param n : width and height of each percolation grid.
+     * @param trials : number of independent trials.
+     * @param seed : base seed of the per trial random streams.
+     * @param threads : number of worker threads, 1 runs the trials on the calling thread.
+     * @throws IllegalArgumentException if n, trials or threads is <= 0
+     */
+    public PercolationStats(int n, int trials, long seed, int threads) {
+        if (n <= 0 || trials <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Required n > 0 && trials > 0 && threads > 0 but input n : " + n
+                                               + " trials :" + trials + " threads : " + threads);
+        }
+        
+        runTrials(n, trials, seed, threads);
+    }
+    
+    /**
+     * Same trials as PercolationStats(n, trials, seed, threads), progress is written into checkpoint after every
+     * checkpointInterval trials. If checkpoint exists, trials it already covers are not run again and
+     * the result is exactly the same as an uninterrupted run. The checkpoint holds the Welford accumulator
+     * and the number of finished trials, which with the seed is the whole random state of the next trials.
+     * @param n : width and height of each percolation grid.
+     * @param trials : total number of trials.
+     * @param seed : base seed of the per trial random streams.
+     * @param threads : number of worker threads.
+     * @param checkpoint : checkpoint path, read if it exists and rewritten during the run.
+     * @param checkpointInterval : number of trials between checkpoint writes.
+     * @return statistics of all trials.
+     * @throws IllegalArgumentException if n, trials, threads or checkpointInterval is <= 0
+     * @throws IOException if checkpoint can not be read or written, belongs to another n or seed,
+     *                     or already covers more than trials trials.
+     */
+    public static PercolationStats resumable(int n, int trials, long seed, int threads,
+                                             Path checkpoint, int checkpointInterval) throws IOException {
+        if (n <= 0 || trials <= 0 || threads <= 0 || checkpointInterval <= 0) {
+            throw new IllegalArgumentException("Required n > 0 && trials > 0 && threads > 0 && checkpointInterval > 0"
+                                               + " but input n : " + n + " trials :" + trials + " threads : " + threads
+                                               + " checkpointInterval : " + checkpointInterval);
+        }
+        
+        final PercolationStats stats = new PercolationStats();
+        if (Files.exists(checkpoint)) {
+            stats.restore(checkpoint, n, seed);
+            if (stats.trialCount > trials) {
+                throw new IOException(checkpoint + " already covers " + stats.trialCount + " trials, more than trials : "
+                                      + trials);
+            }
+        }
+        while (stats.trialCount < trials) {
+            stats.runTrials(n, Math.min(trials, stats.trialCount + checkpointInterval), seed, threads);
+            stats.checkpoint(checkpoint, n, seed);
+        }
+        return stats;
+    }
+
+    /**
+     * Runs seeded trials fromTrial to toTrial - 1 and appends their thresholds to a TrialResultLog, so a study
+     * can be sharded by trial range over processes or machines and combined with fromLogs. Records are flushed
+     * every LOG_FLUSH_INTERVAL trials, if log already has records the run continues after the last one.
+     * @param n : width and height of each percolation grid.
+     * @param seed : base seed of the per trial random streams, same for every shard of a study.
+     * @param fromTrial : index of the first trial of the shard.
+     * @param toTrial : index after the last trial of the shard.
+     * @param threads : number of worker threads.
+     * @param log : log path, created if it does not exist.
+     * @throws IllegalArgumentException if n or threads is <= 0, fromTrial < 0 or toTrial < fromTrial
+     * @throws IOException if log can not be written or belongs to other parameters.
+     */
+    public static void logTrials(int n, long seed, int fromTrial, int toTrial, int threads, Path log) throws IOException {
+        if (n <= 0 || threads <= 0 || fromTrial < 0 || toTrial < fromTrial) {
+            throw new IllegalArgumentException("Required n > 0 && threads > 0 && 0 <= fromTrial <= toTrial but input n : "
+                                               + n + " threads : " + threads + " fromTrial : " + fromTrial
+                                               + " toTrial : " + toTrial);
+        }
+
+        try (TrialResultLog results = TrialResultLog.open(log, n, seed, fromTrial)) {
+            while (results.nextTrial() < toTrial) {
+                final int from = (int) results.nextTrial();
+                final int to = (int) Math.min(toTrial, (long) from + LOG_FLUSH_INTERVAL);
+                if (threads == 1) {
+                    for (int trial = from; trial < to; trial++) {
+                        results.append(runTrial(n, seed, trial));
+                    }
+                }
+                else {
+                    for (double result : runParallel(n, from, to, seed, Math.min(threads, to - from))) {
+                        results.append(result);
+                    }
+                }
+                results.flush();
+            }
+        }
+    }
+
+    /**
+     * Statistics over the union of trial result logs, records are streamed and never held in memory.
+     * @param logs : logs written by logTrials.
+     * @return statistics of every record of the logs.
+     * @throws IllegalArgumentException if no log is given.
+     * @throws IOException if a log can not be read, logs are of different n or two logs of the same seed
+     *                     contain the same trial.
+     */
+    public static PercolationStats fromLogs(Path... logs) throws IOException {
+        if (logs.length == 0) {
+            throw new IllegalArgumentException("At least one trial result log is required");
+        }
+
+        final TrialResultLog.Header[] headers = new TrialResultLog.Header[logs.length];
+        for (int i = 0; i < logs.length; i++) {
+            headers[i] = TrialResultLog.readHeader(logs[i]);
+            if (headers[i].n() != headers[0].n()) {
+                throw new IOException(logs[i] + " is a log of n : " + headers[i].n() + " but " + logs[0]
+                                      + " is of n : " + headers[0].n());
+            }
+            for (int j = 0; j < i; j++) {
+                if (headers[i].seed() == headers[j].seed()
+                    && headers[i].firstTrial() < headers[j].firstTrial() + headers[j].trials()
+                    && headers[j].firstTrial() < headers[i].firstTrial() + headers[i].trials()) {
+                    throw new IOException(logs[i] + " and " + logs[j] + " contain the same trials of seed : "
+                                          + headers[i].seed());
+                }
+            }
+        }
+
+        final PercolationStats stats = new PercolationStats();
+        for (Path log : logs) {
+            TrialResultLog.forEach(log, stats::accumulate);
+        }
+        return stats;
+    }
+
+    /**
+     * Runs seeded trials from trialCount up to toTrial and accumulates them in trial order,
+     * so that floating point result does not depend on scheduling.
+     * @param n : width and height of each percolation grid.
+     * @param toTrial : index after the last trial to run.
+     * @param seed : base seed of the per trial random streams.
+     * @param threads : number of worker threads.
+     */
+    private void runTrials(int n, int toTrial, long seed, int threads) {
+        if (threads == 1) {
+            while (trialCount < toTrial) {
+                accumulate(runTrial(n, seed, trialCount));
+            }
+        }
+        else {
+            for (double result : runParallel(n, trialCount, toTrial, seed, Math.min(threads, toTrial - trialCount))) {
+                accumulate(result);
+            }
+        }
+    }
+    
+    private void checkpoint(Path file, int n, long seed) throws IOException {
+        try (CheckpointFile checkpoint = CheckpointFile.create(file)) {
+            checkpoint.writeHeader(CHECKPOINT_MAGIC, CHECKPOINT_VERSION);
+            checkpoint.writeInt(n);
+            checkpoint.writeLong(seed);
+            checkpoint.writeInt(trialCount);
+            checkpoint.writeDouble(runningMean);
+            checkpoint.writeDouble(squaredDiffSum);
+            checkpoint.commit();
+        }
+    }
+    
+    private void restore(Path file, int n, long seed) throws IOException {
+        try (CheckpointFile checkpoint = CheckpointFile.open(file)) {
+            checkpoint.readHeader(CHECKPOINT_MAGIC, CHECKPOINT_VERSION);
+            final int fileN = checkpoint.readInt();
+            final long fileSeed = checkpoint.readLong();
+            if (fileN != n || fileSeed != seed) {
+                throw new IOException(file + " is a checkpoint of n : " + fileN + " seed : " + fileSeed
+                                      + " not of n : " + n + " seed : " + seed);
+            }
+            trialCount = checkpoint.readInt();
+            runningMean = checkpoint.readDouble();
+            squaredDiffSum = checkpoint.readDouble();
+        }
+    }
+    
+    /**
+     * Single threaded untilPrecision(n, targetWidth, timeBudgetMillis, seed, 1).
+     */
+    public static PercolationStats untilPrecision(int n, double targetWidth, long timeBudgetMillis, long seed) {
+        return untilPrecision(n, targetWidth, timeBudgetMillis, seed, 1);
+    }
+    
+    /**
+     * Runs seeded trials in batches of ADAPTIVE_BATCH until 95% confidence interval is not wider than targetWidth
+     * or time budget is spent. Stopping is only checked between batches, so when the time budget is not hit
+     * the number of trials and the result do not depend on threads.
+     * Trial i uses the same random stream as trial i of PercolationStats(n, trials, seed, threads).
+     * @param n : width and height of each percolation grid.
+     * @param targetWidth : stop when confidenceHi() - confidenceLo() <= targetWidth.
+     * @param timeBudgetMillis : stop when this much wall clock time is spent, at least one batch is run anyway.
+     * @param seed : base seed of the per trial random streams.
+     * @param threads : number of worker threads running a batch.
+     * @return statistics of the trials run, see trials().
+     * @throws IllegalArgumentException if n, targetWidth, timeBudgetMillis or threads is <= 0
+     */
+    public static PercolationStats untilPrecision(int n, double targetWidth, long timeBudgetMillis, long seed,
+                                                  int threads) {
+        if (n <= 0 || !(targetWidth > 0) || timeBudgetMillis <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Required n > 0 && targetWidth > 0 && timeBudgetMillis > 0 && threads > 0"
+                                               + " but input n : " + n + " targetWidth : " + targetWidth
+                                               + " timeBudgetMillis : " + timeBudgetMillis + " threads : " + threads);
+        }
+        
+        final PercolationStats stats = new PercolationStats();
+        // elapsed time is compared instead of a deadline, so a huge budget can not overflow into the past
+        final long budgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        final long start = System.nanoTime();
+        while (stats.trialCount < Integer.MAX_VALUE) {
+            stats.runTrials(n, (int) Math.min(Integer.MAX_VALUE, (long) stats.trialCount + ADAPTIVE_BATCH), seed, threads);
+            if (stats.trialCount >= MIN_ADAPTIVE_TRIALS && stats.confidenceHi() - stats.confidenceLo() <= targetWidth) {
+                break;
+            }
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+        return stats;
+    }
+    
+    // empty statistics, filled by the static factories
+    private PercolationStats() {
+    }
+    
+    /**
+     * Welford online update of mean and squared difference sum.
+     * @param threshold : result of one trial.
+     */
+    private void accumulate(double threshold) {
+        trialCount++;
+        final double delta = threshold - runningMean;
+        runningMean += delta / trialCount;
+        squaredDiffSum += delta * (threshold - runningMean);
+    }
+    
+    /**
+     * Shares trial indexes between workers through a counter, each result is written to its own slot.
+     * @param n : width and height of each percolation grid.
+     * @param fromTrial : index of the first trial.
+     * @param toTrial : index after the last trial.
+     * @param seed : base seed of the per trial random streams.
+     * @param threads : number of worker threads.
+     * @return results of trials fromTrial to toTrial - 1 in trial order.
+     */
+    private static double[] runParallel(final int n, final int fromTrial, int toTrial, final long seed, int threads) {
+        final double[] results = new double[toTrial - fromTrial];
+        final AtomicInteger nextTrial = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<?>> workers = new ArrayList<>(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    for (int i = nextTrial.getAndIncrement(); i < results.length; i = nextTrial.getAndIncrement()) {
+                        results[i] = runTrial(n, seed, fromTrial + i);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting percolation trials", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Percolation trial failed", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+    
+    /**
+     * Opens random sites of a new n-by-n grid until it percolates.
+     * @param n : width and height of the percolation grid.
+     * @param seed : base seed of the per trial random streams.
+     * @param trial : index of the trial, selects the random stream.
+     * @return fraction of open sites when the grid percolates.
+     */
+    private static double runTrial(int n, long seed, int trial) {
+        final long start = PercolationMetrics.ENABLED ? System.nanoTime() : 0L;
+        final SplittableRandom random = new SplittableRandom(trialSeed(seed, trial));
+        Percolation experiment = new Percolation(n);
+        while (!experiment.percolates()) {
+            experiment.openRandomBlockedSite(random::nextInt);
+        }
+        if (PercolationMetrics.ENABLED) {
+            PercolationMetrics.trial(System.nanoTime() - start);
+        }
+        return (double) experiment.numberOfOpenSites() / ((double) n * n);
+    }
+    
+    /**
+     * Mixes trial index into seed (SplitMix64 finalizer) so neighbour trials get unrelated streams.
+     * @param seed : base seed.
+     * @param trial : index of the trial.
+     * @return seed of the given trial.
+     */
+    static long trialSeed(long seed, int trial) {
+        long z = seed + (trial + 1L) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
     // sample mean of percolation threshold
     public double mean() {
-        return StdStats.mean(results);
+        return runningMean;
         
     }
 
     // sample standard deviation of percolation threshold
     public double stddev() {
-        return StdStats.stddev(results);
+        if (trialCount < 2) {
+            return Double.NaN;
+        }
+        return Math.sqrt(squaredDiffSum / (trialCount - 1));
     }
 
     // low endpoint of 95% confidence interval
     public double confidenceLo() {
-        return mean() - CONF_CONST * stddev() / Math.sqrt(results.length);
+        return mean() - CONF_CONST * stddev() / Math.sqrt(trialCount);
         
     }
 
     // high endpoint of 95% confidence interval
     public double confidenceHi() {
-        return mean() + CONF_CONST * stddev() / Math.sqrt(results.length);
+        return mean() + CONF_CONST * stddev() / Math.sqrt(trialCount);
         
     }
 
+    // number of trials the statistics are computed from
+    public int trials() {
+        return trialCount;
+    }
+
    // test client (see below)
    public static void main(String[] args) {
        int n;
-       int trials;
        n = Integer.parseInt(args[0]);
-       trials = Integer.parseInt(args[1]);
 
-       PercolationStats stats = new PercolationStats(n, trials);
+       PercolationStats stats;
+       if (args.length >= 3 && "-width".equals(args[1])) {
+           // n -width targetWidth [timeBudgetMillis] [seed] [threads]
+           double targetWidth = Double.parseDouble(args[2]);
+           long timeBudgetMillis = args.length >= 4 ? Long.parseLong(args[3]) : Long.MAX_VALUE;
+           long seed = args.length >= 5 ? Long.parseLong(args[4]) : System.nanoTime();
+           int threads = args.length >= 6 ? Integer.parseInt(args[5]) : 1;
+           stats = untilPrecision(n, targetWidth, timeBudgetMillis, seed, threads);
+           StdOut.println("trials                  = " + stats.trials());
+       }
+       else if (args.length >= 4) {
+           long seed = Long.parseLong(args[2]);
+           int threads = Integer.parseInt(args[3]);
+           stats = new PercolationStats(n, Integer.parseInt(args[1]), seed, threads);
+       }
+       else {
+           stats = new PercolationStats(n, Integer.parseInt(args[1]));
+       }
 
        StdOut.println("mean                    = " + stats.mean());
        StdOut.println("stddev                  = " + stats.stddev());
        StdOut.println("95% confidence interval = [" + stats.confidenceLo() + ", " + stats.confidenceHi() + "]");
+       if (PercolationMetrics.ENABLED) {
+           StdOut.println(PercolationMetrics.snapshot());
+       }
    }
 
 }
\ No newline at end of file
@@ -14,6 +14,9 @@
  *  open sites (that aren't full) in white, and blocked sites in black,
  *  with with site (0, 0) in the upper left-hand corner.
  *
+ *  Only the first frame draws every site, later frames redraw the sites
+ *  Percolation reports as opened or filled since the previous frame.
+ *
  ******************************************************************************/
 
 import java.awt.Font;
@@ -35,28 +38,45 @@ public class PercolationVisualizer {
         StdDraw.filledSquare(n/2.0, n/2.0, n/2.0);
 
         // draw n-by-n grid
-        for (int row = 1; row <= n; row++) {
-            for (int col = 1; col <= n; col++) {
-                if (percolation.isFull(row, col)) {
-                    StdDraw.setPenColor(StdDraw.BOOK_LIGHT_BLUE);
-                }
-                else if (percolation.isOpen(row, col)) {
-                    StdDraw.setPenColor(StdDraw.WHITE);
-                }
-                else {
-                    StdDraw.setPenColor(StdDraw.BLACK);
-                }
-                StdDraw.filledSquare((col - 1) + 0.5, n - (row - 1) - 0.5, 0.45);
-            }
+        for (int index = 0; index < n * n; index++) {
+            drawSite(percolation, n, index);
+        }
+
+        drawStatus(percolation, n);
+    }
+
+    // redraw only the sites opened or filled since the previous frame, draw() has to be called first
+    public static void drawChanges(Percolation percolation, int n) {
+        percolation.drainChangedSites(index -> drawSite(percolation, n, index));
+        drawStatus(percolation, n);
+    }
+
+    // draw site at 1D index (row - 1) * n + (col - 1)
+    private static void drawSite(Percolation percolation, int n, int index) {
+        if (percolation.isFullSite(index)) {
+            StdDraw.setPenColor(StdDraw.BOOK_LIGHT_BLUE);
+        }
+        else if (percolation.isOpenSite(index)) {
+            StdDraw.setPenColor(StdDraw.WHITE);
+        }
+        else {
+            StdDraw.setPenColor(StdDraw.BLACK);
         }
+        int row = index / n + 1;
+        int col = index % n + 1;
+        StdDraw.filledSquare((col - 1) + 0.5, n - (row - 1) - 0.5, 0.45);
+    }
+
+    // write status text over the previous one
+    private static void drawStatus(Percolation percolation, int n) {
+        StdDraw.setPenColor(StdDraw.WHITE);
+        StdDraw.filledRectangle(n/2.0, -0.025*n, 0.55*n, 0.025*n);
 
-        // write status text
         StdDraw.setFont(new Font("SansSerif", Font.PLAIN, 12));
         StdDraw.setPenColor(StdDraw.BLACK);
         StdDraw.text(0.25*n, -0.025*n, percolation.numberOfOpenSites() + " open sites");
         if (percolation.percolates()) StdDraw.text(0.75*n, -0.025*n, "percolates");
         else                          StdDraw.text(0.75*n, -0.025*n, "does not percolate");
-
     }
 
     private static void simulateFromFile(String filename) {
@@ -68,6 +88,7 @@ public class PercolationVisualizer {
         StdDraw.enableDoubleBuffering();
 
         // repeatedly read in sites to open and draw resulting system
+        percolation.enableChangeTracking();
         draw(percolation, n);
         StdDraw.show();
         StdDraw.pause(DELAY);
@@ -76,7 +97,7 @@ public class PercolationVisualizer {
             int row = in.readInt() + 1;
             int col = in.readInt() + 1;
             percolation.open(row, col);
-            draw(percolation, n);
+            drawChanges(percolation, n);
             StdDraw.show();
             StdDraw.pause(DELAY);
         }
@@ -0,0 +1,229 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Append only binary log of PercolationStats trial thresholds, so trials of one study can be run by
+ * several processes or machines and combined afterwards with PercolationStats.fromLogs.
+ *
+ * Little endian layout :
+ *      header : magic "PLOG", version, n, seed, firstTrial
+ *      records : one double per trial, record i is the threshold of trial firstTrial + i.
+ * A record half written by a crashed process is dropped when the log is opened again, every complete
+ * record is kept so that the writer continues from the next trial.
+ *
+ * @author anilk
+ */
+public final class TrialResultLog implements Closeable {
+    private static final int MAGIC = 0x504c4f47;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + Long.BYTES;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+     * Parameters of a log and number of complete records in it.
+     */
+    public static final class Header {
+        private final int n;
+        private final long seed;
+        private final int firstTrial;
+        private final long trials;
+
+        private Header(int n, long seed, int firstTrial, long trials) {
+            this.n = n;
+            this.seed = seed;
+            this.firstTrial = firstTrial;
+            this.trials = trials;
+        }
+
+        public int n() {
+            return n;
+        }
+
+        public long seed() {
+            return seed;
+        }
+
+        public int firstTrial() {
+            return firstTrial;
+        }
+
+        public long trials() {
+            return trials;
+        }
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final int firstTrial;
+    private long trials;
+
+    private TrialResultLog(FileChannel channel, int firstTrial, long trials) {
+        this.channel = channel;
+        this.firstTrial = firstTrial;
+        this.trials = trials;
+    }
+
+    /**
+     * Opens a log for appending, creating it if it does not exist.
+     * @param file : log path.
+     * @param n : grid size of the trials.
+     * @param seed : base seed of the trials.
+     * @param firstTrial : index of the trial of the first record.
+     * @return log positioned after its last complete record.
+     * @throws IOException if file can not be opened or is a log of other parameters.
+     */
+    public static TrialResultLog open(Path file, int n, long seed, int firstTrial) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                     StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(n).putLong(seed).putInt(firstTrial).flip();
+                writeFully(channel, header, 0);
+                return new TrialResultLog(channel, firstTrial, 0);
+            }
+
+            final Header header = readHeader(channel, file);
+            if (header.n != n || header.seed != seed || header.firstTrial != firstTrial) {
+                throw new IOException(file + " is a log of n : " + header.n + " seed : " + header.seed + " firstTrial : "
+                                      + header.firstTrial + " not of n : " + n + " seed : " + seed
+                                      + " firstTrial : " + firstTrial);
+            }
+            channel.truncate(HEADER_BYTES + header.trials * Double.BYTES);
+            return new TrialResultLog(channel, firstTrial, header.trials);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Buffers threshold of the next trial, see flush.
+     * @param threshold : result of trial nextTrial().
+     */
+    public void append(double threshold) throws IOException {
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        buffer.putDouble(threshold);
+        trials++;
+    }
+
+    /**
+     * Writes buffered records and forces them to disk, they survive a crash after this returns.
+     */
+    public void flush() throws IOException {
+        writeBuffer();
+        channel.force(false);
+    }
+
+    /**
+     * @return number of records including buffered ones.
+     */
+    public long trials() {
+        return trials;
+    }
+
+    /**
+     * @return index of the trial of the next appended record.
+     */
+    public long nextTrial() {
+        return firstTrial + trials;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @param file : log path.
+     * @return parameters and number of complete records of the log.
+     * @throws IOException if file can not be read or is not a log.
+     */
+    public static Header readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel, file);
+        }
+    }
+
+    /**
+     * Streams complete records of the log in trial order through a fixed size buffer.
+     * @param file : log path.
+     * @param consumer : receives every threshold.
+     * @return parameters and number of records of the log.
+     * @throws IOException if file can not be read or is not a log.
+     */
+    public static Header forEach(Path file, DoubleConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final Header header = readHeader(channel, file);
+            final ByteBuffer records = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long position = HEADER_BYTES;
+            long remaining = header.trials;
+            while (remaining > 0) {
+                records.clear();
+                records.limit((int) Math.min(records.capacity(), remaining * Double.BYTES));
+                readFully(channel, records, position, file);
+                position += records.limit();
+                records.flip();
+                while (records.hasRemaining()) {
+                    consumer.accept(records.getDouble());
+                    remaining--;
+                }
+            }
+            return header;
+        }
+    }
+
+    private static Header readHeader(FileChannel channel, Path file) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0, file);
+        header.flip();
+        final int magic = header.getInt();
+        final int version = header.getInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IOException(file + " is not a trial result log, magic : " + Integer.toHexString(magic)
+                                  + " version : " + version);
+        }
+        final int n = header.getInt();
+        final long seed = header.getLong();
+        final int firstTrial = header.getInt();
+        return new Header(n, seed, firstTrial, (channel.size() - HEADER_BYTES) / Double.BYTES);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        // records not yet written are at the end of the buffer
+        final long position = HEADER_BYTES + (trials - buffer.remaining() / Double.BYTES) * Double.BYTES;
+        writeFully(channel, buffer, position);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer source, long position) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer target, long position, Path file) throws IOException {
+        while (target.hasRemaining()) {
+            final int read = channel.read(target, position);
+            if (read < 0) {
+                throw new IOException(file + " is truncated at " + position + " bytes");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Thread safe deque of fixed capacity for handing items between pipeline stages. A producer blocks while
+ * the deque is full instead of growing it, so a stalled consumer slows producers down rather than
+ * exhausting the heap.
+ *
+ *      items : circular array of capacity slots, items are between head and head + size - 1 modulo capacity.
+ *      lock : guards every field, notEmpty and notFull conditions park waiting threads (LockSupport.park)
+ *             instead of spinning, a waiting thread costs no CPU.
+ * put and take block without limit, offer and poll with a timeout give up and return false or null.
+ *
+ * @author anilk
+ *
+ * @param <Item>
+ */
+public class BoundedBlockingDeque<Item> implements Iterable<Item> {
+    private final Item[] items;
+    private int head = 0;
+    private int size = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * @param capacity : maximum number of items.
+     * @throws IllegalArgumentException if capacity is <= 0
+     */
+    public BoundedBlockingDeque(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Required capacity > 0 but input capacity : " + capacity);
+        }
+        items = (Item[]) new Object[capacity];
+    }
+
+    // is the deque empty? only a snapshot while other threads are active.
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // return the number of items, only a snapshot while other threads are active.
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // return the number of items which can be added without blocking, only a snapshot.
+    public int remainingCapacity() {
+        return items.length - size();
+    }
+
+    // add the item to the front, waiting while the deque is full
+    public void putFirst(Item item) throws InterruptedException {
+        validateAdd(item);
+        lock.lockInterruptibly();
+        try {
+            while (size == items.length) {
+                notFull.await();
+            }
+            linkFirst(item);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // add the item to the back, waiting while the deque is full
+    public void putLast(Item item) throws InterruptedException {
+        validateAdd(item);
+        lock.lockInterruptibly();
+        try {
+            while (size == items.length) {
+                notFull.await();
+            }
+            linkLast(item);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the item to the front, waiting up to timeout while the deque is full.
+     * @return false if the deque was still full when timeout elapsed.
+     */
+    public boolean offerFirst(Item item, long timeout, TimeUnit unit) throws InterruptedException {
+        validateAdd(item);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == items.length) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            linkFirst(item);
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the item to the back, waiting up to timeout while the deque is full.
+     * @return false if the deque was still full when timeout elapsed.
+     */
+    public boolean offerLast(Item item, long timeout, TimeUnit unit) throws InterruptedException {
+        validateAdd(item);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == items.length) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            linkLast(item);
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // remove and return the item from the front, waiting while the deque is empty
+    public Item takeFirst() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return unlinkFirst();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // remove and return the item from the back, waiting while the deque is empty
+    public Item takeLast() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return unlinkLast();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the item from the front, waiting up to timeout while the deque is empty.
+     * @return removed item, or null if the deque was still empty when timeout elapsed.
+     */
+    public Item pollFirst(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return unlinkFirst();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the item from the back, waiting up to timeout while the deque is empty.
+     * @return removed item, or null if the deque was still empty when timeout elapsed.
+     */
+    public Item pollLast(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return unlinkLast();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves all items from the front into target under a single lock acquisition, without waiting.
+     * @return number of moved items.
+     */
+    public int drainTo(Collection<? super Item> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Moves at most maxItems items from the front into target under a single lock acquisition, without waiting.
+     * @return number of moved items.
+     * @throws IllegalArgumentException if target is null.
+     */
+    public int drainTo(Collection<? super Item> target, int maxItems) {
+        if (target == null) {
+            throw new IllegalArgumentException("Deque can not be drained into null");
+        }
+        lock.lock();
+        try {
+            final int count = Math.min(size, Math.max(0, maxItems));
+            for (int i = 0; i < count; i++) {
+                target.add(items[head]);
+                items[head] = null;
+                head = next(head);
+                size--;
+            }
+            if (count > 0) {
+                notFull.signalAll();
+            }
+            return count;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return iterator over a copy of the items from front to back, taken under the lock.
+     */
+    @Override
+    public Iterator<Item> iterator() {
+        final Item[] copy;
+        lock.lock();
+        try {
+            copy = (Item[]) new Object[size];
+            for (int i = 0, index = head; i < size; i++, index = next(index)) {
+                copy[i] = items[index];
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        return new Iterator<Item>() {
+            private int currentIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return currentIndex < copy.length;
+            }
+
+            @Override
+            public Item next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("BoundedBlockingDeque iterator next element does not exists");
+                }
+                return copy[currentIndex++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("BoundedBlockingDeque iterator does not support remove operation");
+            }
+        };
+    }
+
+    // following helpers are called with the lock held and the deque not full / not empty
+
+    private void linkFirst(Item item) {
+        head = head == 0 ? items.length - 1 : head - 1;
+        items[head] = item;
+        size++;
+        notEmpty.signal();
+    }
+
+    private void linkLast(Item item) {
+        final int tail = head + size;
+        items[tail < items.length ? tail : tail - items.length] = item;
+        size++;
+        notEmpty.signal();
+    }
+
+    private Item unlinkFirst() {
+        final Item result = items[head];
+        items[head] = null;
+        head = next(head);
+        size--;
+        notFull.signal();
+        return result;
+    }
+
+    private Item unlinkLast() {
+        final int last = head + size - 1;
+        final int index = last < items.length ? last : last - items.length;
+        final Item result = items[index];
+        items[index] = null;
+        size--;
+        notFull.signal();
+        return result;
+    }
+
+    private int next(int index) {
+        return index + 1 == items.length ? 0 : index + 1;
+    }
+
+    private void validateAdd(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Null input item into deque is not supported");
+        }
+    }
+
+//-----------------------------End Of BoundedBlockingDeque Implementation------------------------------------
+
+    // Below code segments normally should be seperated as unit test!
+    // a producer puts items through a small deque to a consumer, order has to be kept and size bounded.
+    public static void main(String[] args) throws InterruptedException {
+        final int itemCount = args.length >= 1 ? Integer.parseInt(args[0]) : 1000000;
+        final int capacity = args.length >= 2 ? Integer.parseInt(args[1]) : 16;
+        final BoundedBlockingDeque<Integer> deque = new BoundedBlockingDeque<>(capacity);
+        final int[] outOfOrder = new int[1];
+        final int[] oversize = new int[1];
+
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < itemCount; i++) {
+                    deque.putLast(i);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread consumer = new Thread(() -> {
+            try {
+                final List<Integer> batch = new ArrayList<>();
+                int expected = 0;
+                while (expected < itemCount) {
+                    if (deque.size() > capacity) {
+                        oversize[0]++;
+                    }
+                    batch.clear();
+                    batch.add(deque.takeFirst());
+                    deque.drainTo(batch, capacity);
+                    for (int item : batch) {
+                        if (item != expected++) {
+                            outOfOrder[0]++;
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+
+        StdOut.println("out of order : " + outOfOrder[0] + " oversize : " + oversize[0]);
+        StdOut.println("pollFirst on empty deque : " + deque.pollFirst(10, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < capacity; i++) {
+            deque.putFirst(i);
+        }
+        StdOut.println("offerLast on full deque : " + deque.offerLast(-1, 10, TimeUnit.MILLISECONDS)
+                       + " takeLast : " + deque.takeLast() + " takeFirst : " + deque.takeFirst());
+    }
+}
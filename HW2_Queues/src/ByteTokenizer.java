@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Whitespace separated tokens of a byte stream read through a fixed buffer. Tokens are only decoded into
+ * Strings by next, skip passes over a token without allocating, which is the cost of most tokens
+ * in a reservoir sample. Bytes <= ' ' are whitespace, other bytes are decoded as UTF-8.
+ *
+ * @author anilk
+ */
+final class ByteTokenizer {
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position = 0;
+    private int limit = 0;
+    private byte[] token = new byte[64];
+
+    ByteTokenizer(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return next token, or null at the end of the stream.
+     */
+    String next() throws IOException {
+        if (!skipWhitespace()) {
+            return null;
+        }
+        int length = 0;
+        for (int b = read(); b > ' '; b = read()) {
+            if (length == token.length) {
+                final byte[] larger = new byte[2 * token.length];
+                System.arraycopy(token, 0, larger, 0, length);
+                token = larger;
+            }
+            token[length++] = (byte) b;
+        }
+        return new String(token, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Passes over the next token.
+     * @return false if there was no token left.
+     */
+    boolean skip() throws IOException {
+        if (!skipWhitespace()) {
+            return false;
+        }
+        while (true) {
+            while (position < limit) {
+                if ((buffer[position++] & 0xff) <= ' ') {
+                    return true;
+                }
+            }
+            if (!fill()) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return false if stream ended before a token byte, otherwise position is at the token.
+     */
+    private boolean skipWhitespace() throws IOException {
+        while (true) {
+            while (position < limit) {
+                if ((buffer[position] & 0xff) > ' ') {
+                    return true;
+                }
+                position++;
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    // next byte as 0 to 255, or -1 at the end of the stream
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        final int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,254 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Thread safe randomized queue split into stripes, each one a RandomizedQueue style array with its own lock.
+ * Threads only contend when they pick the same stripe, so throughput grows with the number of threads.
+ *
+ *      enqueue : adds the item to a random stripe, so stripes stay balanced even with a single producer.
+ *      dequeue : removes a random item of a random stripe, if that stripe is empty it steals from the
+ *                next non empty stripe.
+ * Every stripe holds a uniform random share of the items, so dequeue is approximately uniform over all
+ * items. It is exactly uniform within a stripe, small differences in stripe sizes bias it slightly.
+ * Random numbers come from ThreadLocalRandom, threads never share a generator.
+ *
+ * @author anilk
+ *
+ * @param <Item>
+ */
+public class ConcurrentRandomizedQueue<Item> implements Iterable<Item> {
+
+    private static final class Stripe<Item> {
+        private Item[] elements = (Item[]) new Object[2];
+        // volatile so that empty stripes are skipped without taking their lock
+        private volatile int size = 0;
+
+        // caller holds the stripe lock
+        private void add(Item item) {
+            if (size == elements.length) {
+                resize(2 * size);
+            }
+            elements[size] = item;
+            size++;
+        }
+
+        // caller holds the stripe lock, stripe is not empty
+        private Item removeRandom(ThreadLocalRandom random) {
+            final int last = size - 1;
+            final int randomIndex = random.nextInt(size);
+            Item result = elements[randomIndex];
+            elements[randomIndex] = elements[last];
+            elements[last] = null;
+            size = last;
+            if (last > 0 && last <= elements.length / 4) {
+                resize(elements.length / 2);
+            }
+            return result;
+        }
+
+        private void resize(int capacity) {
+            Item[] copy = (Item[]) new Object[capacity];
+            System.arraycopy(elements, 0, copy, 0, size);
+            elements = copy;
+        }
+    }
+
+    private final Stripe<Item>[] stripes;
+
+    // construct an empty queue with two stripes per processor
+    public ConcurrentRandomizedQueue() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripeCount : number of independently locked stripes, rounded up to a power of two.
+     * @throws IllegalArgumentException if stripeCount is <= 0 or > 2^30
+     */
+    public ConcurrentRandomizedQueue(int stripeCount) {
+        if (stripeCount <= 0 || stripeCount > 1 << 30) {
+            throw new IllegalArgumentException("Required 0 < stripeCount <= 2^30 but input stripeCount : " + stripeCount);
+        }
+        final int capacity = Integer.highestOneBit(stripeCount - 1) << 1;
+        stripes = (Stripe<Item>[]) new Stripe<?>[Math.max(1, capacity)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    // is the randomized queue empty? only a snapshot while other threads are active.
+    public boolean isEmpty() {
+        for (Stripe<Item> stripe : stripes) {
+            if (stripe.size != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // return the number of items, only a snapshot while other threads are active.
+    public int size() {
+        int result = 0;
+        for (Stripe<Item> stripe : stripes) {
+            result += stripe.size;
+        }
+        return result;
+    }
+
+    // add the item
+    public void enqueue(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        final Stripe<Item> stripe = stripes[ThreadLocalRandom.current().nextInt(stripes.length)];
+        synchronized (stripe) {
+            stripe.add(item);
+        }
+    }
+
+    /**
+     * Removes a random item of a random stripe, stealing from the other stripes if it is empty.
+     * @return removed item.
+     * @throws NoSuchElementException if every stripe is empty.
+     */
+    public Item dequeue() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int start = random.nextInt(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            final Stripe<Item> stripe = stripes[(start + i) & (stripes.length - 1)];
+            if (stripe.size == 0) {
+                continue;
+            }
+            synchronized (stripe) {
+                if (stripe.size > 0) {
+                    return stripe.removeRandom(random);
+                }
+            }
+        }
+        throw new NoSuchElementException("Randomized queue is empty");
+    }
+
+    /**
+     * @return random item of a random non empty stripe, not removed.
+     * @throws NoSuchElementException if every stripe is empty.
+     */
+    public Item sample() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int start = random.nextInt(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            final Stripe<Item> stripe = stripes[(start + i) & (stripes.length - 1)];
+            if (stripe.size == 0) {
+                continue;
+            }
+            synchronized (stripe) {
+                if (stripe.size > 0) {
+                    return stripe.elements[random.nextInt(stripe.size)];
+                }
+            }
+        }
+        throw new NoSuchElementException("Randomized queue is empty");
+    }
+
+    /**
+     * Copies stripes one by one and shuffles the copy, so the iterator is independent from later operations.
+     * Items added or removed while the copy is taken may or may not be seen.
+     */
+    @Override
+    public Iterator<Item> iterator() {
+        Item[] copy = (Item[]) new Object[size()];
+        int count = 0;
+        for (Stripe<Item> stripe : stripes) {
+            synchronized (stripe) {
+                if (count + stripe.size > copy.length) {
+                    Item[] larger = (Item[]) new Object[Math.max(2 * copy.length, count + stripe.size)];
+                    System.arraycopy(copy, 0, larger, 0, count);
+                    copy = larger;
+                }
+                System.arraycopy(stripe.elements, 0, copy, count, stripe.size);
+                count += stripe.size;
+            }
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = count - 1; i > 0; i--) {
+            int swapIndex = random.nextInt(i + 1);
+            Item swap = copy[i];
+            copy[i] = copy[swapIndex];
+            copy[swapIndex] = swap;
+        }
+
+        final Item[] items = copy;
+        final int itemCount = count;
+        return new Iterator<Item>() {
+            private int currentIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return currentIndex < itemCount;
+            }
+
+            @Override
+            public Item next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("ConcurrentRandomizedQueue iterator next element does not exists");
+                }
+                return items[currentIndex++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("ConcurrentRandomizedQueue iterator does not support remove operation");
+            }
+        };
+    }
+
+//-----------------------------End Of ConcurrentRandomizedQueue Implementation------------------------------------
+
+    // Below code segments normally should be seperated as unit test!
+    // producers enqueue while consumers dequeue, every item has to be dequeued exactly once.
+    public static void main(String[] args) throws InterruptedException {
+        final int itemsPerProducer = args.length >= 1 ? Integer.parseInt(args[0]) : 250000;
+        final int threadCount = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+        final ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<>();
+        final AtomicIntegerArray taken = new AtomicIntegerArray(itemsPerProducer * threadCount);
+        final Thread[] threads = new Thread[2 * threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            final int first = t * itemsPerProducer;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    queue.enqueue(first + i);
+                }
+            });
+            threads[threadCount + t] = new Thread(() -> {
+                int dequeued = 0;
+                while (dequeued < itemsPerProducer) {
+                    try {
+                        taken.incrementAndGet(queue.dequeue());
+                        dequeued++;
+                    }
+                    catch (NoSuchElementException e) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int wrong = 0;
+        for (int i = 0; i < taken.length(); i++) {
+            if (taken.get(i) != 1) {
+                wrong++;
+            }
+        }
+        StdOut.println(wrong == 0 && queue.isEmpty() ? "every item dequeued once" : wrong + " items lost or dequeued twice");
+    }
+}
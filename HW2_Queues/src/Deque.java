@@ -1,3 +1,4 @@
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
@@ -5,50 +6,39 @@ import java.util.Scanner;
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
 
+/**
+ * Double ended queue on a circular array. Items are stored between head and head + size - 1 modulo capacity,
+ * so both ends are updated without moving other items. Capacity is a power of two to wrap indexes with a mask,
+ * it doubles when full and halves when a quarter full, so the array is 4 to 16 bytes per item with
+ * compressed references instead of ~40 bytes of a linked node.
+ *
+ * @author anilk
+ *
+ * @param <Item>
+ */
 public class Deque<Item> implements Iterable<Item> {
-    
-    private class Node {
-        private final Item item;
-        private Node next;
-        private Node previous;
-        
-        private Node(Item item) {
-            this.item = item;
-        }
-        
-        private void linkNext(Node nextNode) {
-            if (nextNode == null) {
-                throw new NullPointerException("Item " + item.toString() + " tried to link null next");
-            }
-            next = nextNode;
-            nextNode.previous = this;
-        }
-        private void unlink() {
-            next = null;
-            previous = null;
-        }
-    }
+    private static final int MIN_CAPACITY = 2;
+    private static final int MAX_CAPACITY = 1 << 30;
     
     private class DequeIterator implements Iterator<Item> {
-        private Node currentNode;
-        
-        private DequeIterator() {
-            currentNode = first;
-        }
+        // Iteration fails fast if deque is modified, items move when array is resized.
+        private final int expectedModCount = modCount;
+        private int offset = 0;
         
         @Override
         public boolean hasNext() {
-            return currentNode != null;
+            return offset < size;
         }
 
         @Override
         public Item next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("Deque modified during iteration");
+            }
             if (!hasNext()) {
                 throw new NoSuchElementException("DequeIterator next element does not exists");
             }
-            Item result = currentNode.item;
-            currentNode = currentNode.next;
-            return result;
+            return elements[(head + offset++) & (elements.length - 1)];
         }
         
         @Override
@@ -57,12 +47,14 @@ public class Deque<Item> implements Iterable<Item> {
         }
     }
     
-    private int size;
-    private Node first;
-    private Node last;
+    private Item[] elements;
+    private int head = 0;
+    private int size = 0;
+    private int modCount = 0;
     
     // construct an empty deque
     public Deque() {
+        elements = (Item[]) new Object[MIN_CAPACITY];
     }
 
     // is the deque empty?
@@ -78,67 +70,44 @@ public class Deque<Item> implements Iterable<Item> {
     // add the item to the front
     public void addFirst(Item item) {
         validateAdd(item);
-        Node oldFirst = first;
-        first = new Node(item);
-        
-        if (isEmpty()) {
-            last = first;
-        }
-        else {
-            first.linkNext(oldFirst);
-        }
+        resizeUpCheck();
+        head = (head - 1) & (elements.length - 1);
+        elements[head] = item;
         size++;
+        modCount++;
     }
 
     // add the item to the back
     public void addLast(Item item) {
         validateAdd(item);
-        Node oldLast = last;
-        last = new Node(item);
-        
-        if (isEmpty()) {
-            first = last;
-        }
-        else {
-            oldLast.linkNext(last);
-        }
+        resizeUpCheck();
+        elements[(head + size) & (elements.length - 1)] = item;
         size++;
+        modCount++;
     }
 
     // remove and return the item from the front
     public Item removeFirst() {
         validateRemove();
+        Item result = elements[head];
+        elements[head] = null;
+        head = (head + 1) & (elements.length - 1);
         size--;
-        Node oldFirst = first;
-        
-        if (isEmpty()) {
-           first = null;
-           last = null;
-        }
-        else {
-            first = first.next;
-            first.previous = null;
-        }
-        oldFirst.unlink();
-        return oldFirst.item;
+        modCount++;
+        resizeDownCheck();
+        return result;
     }
 
     // remove and return the item from the back
     public Item removeLast() {
         validateRemove();
+        int lastIndex = (head + size - 1) & (elements.length - 1);
+        Item result = elements[lastIndex];
+        elements[lastIndex] = null;
         size--;
-        Node oldLast = last;
-        
-        if (isEmpty()) {
-            first = null;
-            last = null;
-        }
-        else {
-            last = last.previous;
-            last.next = null;
-        }
-        oldLast.unlink();
-        return oldLast.item;
+        modCount++;
+        resizeDownCheck();
+        return result;
     }
 
     // return an iterator over items in order from front to back
@@ -148,6 +117,34 @@ public class Deque<Item> implements Iterable<Item> {
         
     }
     
+    private void resizeUpCheck() {
+        if (size == elements.length) {
+            if (size == MAX_CAPACITY) {
+                throw new IllegalStateException("Deque can not hold more than " + MAX_CAPACITY + " items");
+            }
+            resize(2 * elements.length);
+        }
+    }
+    
+    private void resizeDownCheck() {
+        if (elements.length > MIN_CAPACITY && size <= elements.length / 4) {
+            resize(elements.length / 2);
+        }
+    }
+    
+    /**
+     * Copies items in order to the start of a new array, wrapped part is copied by the second arraycopy.
+     * @param capacity : power of two >= size.
+     */
+    private void resize(int capacity) {
+        Item[] copy = (Item[]) new Object[capacity];
+        int headPart = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, copy, 0, headPart);
+        System.arraycopy(elements, 0, copy, headPart, size - headPart);
+        elements = copy;
+        head = 0;
+    }
+    
     private void validateRemove() {
         if (isEmpty()) {
             throw new NoSuchElementException("Remove operation on empty deque is not allowed");
@@ -0,0 +1,135 @@
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Deque of int values on a circular int[], same semantics as Deque<Integer> without boxing.
+ * nextInt of the primitive iterator reads values without allocating a box per item.
+ *
+ * @author anilk
+ */
+public class IntDeque implements Iterable<Integer> {
+    private static final int MIN_CAPACITY = 2;
+    private static final int MAX_CAPACITY = 1 << 30;
+    
+    private class IntDequeIterator implements PrimitiveIterator.OfInt {
+        // Iteration fails fast if deque is modified, values move when array is resized.
+        private final int expectedModCount = modCount;
+        private int offset = 0;
+        
+        @Override
+        public boolean hasNext() {
+            return offset < size;
+        }
+
+        @Override
+        public int nextInt() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("IntDeque modified during iteration");
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException("IntDequeIterator next element does not exists");
+            }
+            return elements[(head + offset++) & (elements.length - 1)];
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("IntDequeIterator does not support remove operation");
+        }
+    }
+    
+    private int[] elements;
+    private int head = 0;
+    private int size = 0;
+    private int modCount = 0;
+    
+    // construct an empty deque
+    public IntDeque() {
+        elements = new int[MIN_CAPACITY];
+    }
+
+    // is the deque empty?
+    public boolean isEmpty() {
+        return (size() == 0);
+    }
+
+    // return the number of values on the deque
+    public int size() {
+        return size;
+    }
+
+    // add the value to the front
+    public void addFirst(int value) {
+        resizeUpCheck();
+        head = (head - 1) & (elements.length - 1);
+        elements[head] = value;
+        size++;
+        modCount++;
+    }
+
+    // add the value to the back
+    public void addLast(int value) {
+        resizeUpCheck();
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+        modCount++;
+    }
+
+    // remove and return the value from the front
+    public int removeFirst() {
+        validateRemove();
+        int result = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        modCount++;
+        resizeDownCheck();
+        return result;
+    }
+
+    // remove and return the value from the back
+    public int removeLast() {
+        validateRemove();
+        int result = elements[(head + size - 1) & (elements.length - 1)];
+        size--;
+        modCount++;
+        resizeDownCheck();
+        return result;
+    }
+
+    // return an iterator over values in order from front to back
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntDequeIterator();
+    }
+    
+    private void validateRemove() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Remove operation on empty deque is not allowed");
+        }
+    }
+    
+    private void resizeUpCheck() {
+        if (size == elements.length) {
+            if (size == MAX_CAPACITY) {
+                throw new IllegalStateException("IntDeque can not hold more than " + MAX_CAPACITY + " values");
+            }
+            resize(2 * elements.length);
+        }
+    }
+    
+    private void resizeDownCheck() {
+        if (elements.length > MIN_CAPACITY && size <= elements.length / 4) {
+            resize(elements.length / 2);
+        }
+    }
+    
+    private void resize(int capacity) {
+        int[] copy = new int[capacity];
+        int headPart = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, copy, 0, headPart);
+        System.arraycopy(elements, 0, copy, headPart, size - headPart);
+        elements = copy;
+        head = 0;
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Randomized queue of long values on a long[], same semantics as RandomizedQueue<Long> without boxing.
+ * Dequeue swaps the last value into the removed slot. Iterators shuffle their own copy lazily like
+ * RandomizedQueue, step i swaps a random position of [i, count) into position i, so the first k values
+ * cost O(k) random draws. Unlike RandomizedQueue the copy is kept instead of sharing the array through
+ * an undo log : copying long values is a single arraycopy, cheaper than the sparse index map and log
+ * lookups per value. nextLong of the primitive iterator does not allocate per item.
+ *
+ * @author anilk
+ */
+public class LongRandomizedQueue implements Iterable<Long> {
+    
+    private class LongRandomizedQueueIterator implements PrimitiveIterator.OfLong {
+        private int currentIndex = 0;
+        private final long[] iteratorList;
+        
+        private LongRandomizedQueueIterator() {
+            iteratorList = new long[size];
+            System.arraycopy(queueElements, 0, iteratorList, 0, size);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return currentIndex < iteratorList.length;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("LongRandomizedQueueIterator next element does not exists");
+            }
+            final int swapIndex = currentIndex + random.nextInt(iteratorList.length - currentIndex);
+            final long result = iteratorList[swapIndex];
+            iteratorList[swapIndex] = iteratorList[currentIndex];
+            iteratorList[currentIndex++] = result;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("LongRandomizedQueueIterator does not support remove operation");
+        }
+    }
+    
+    private long[] queueElements;
+    private int size = 0;
+    private final RandomSource random;
+    
+    // construct an empty randomized queue
+    public LongRandomizedQueue() {
+        this(RandomSource.stdRandom());
+    }
+    
+    /**
+     * @param random : source of dequeue, sample and iterator indexes.
+     * @throws IllegalArgumentException if random is null.
+     */
+    public LongRandomizedQueue(RandomSource random) {
+        if (random == null) {
+            throw new IllegalArgumentException("Random source of randomized queue can not be null");
+        }
+        this.random = random;
+        queueElements = new long[2];
+    }
+
+    // is the randomized queue empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of values on the randomized queue
+    public int size() {
+        return size;
+    }
+
+    // add the value
+    public void enqueue(long value) {
+        if (size == queueElements.length) {
+            resize(2 * size);
+        }
+        queueElements[size] = value;
+        size++;
+    }
+
+    // remove and return a random value
+    public long dequeue() {
+        assertIfEmpty();
+        int randomIndex = random.nextInt(size);
+        
+        long result = queueElements[randomIndex];
+        queueElements[randomIndex] = queueElements[size - 1];
+        size--;
+        if (!isEmpty() && size <= queueElements.length / 4) {
+            resize(queueElements.length / 2);
+        }
+        return result;
+    }
+
+    // return a random value (but do not remove it)
+    public long sample() {
+        assertIfEmpty();
+        return queueElements[random.nextInt(size)];
+    }
+
+    // return an independent iterator over values in random order
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new LongRandomizedQueueIterator();
+    }
+    
+    private void assertIfEmpty() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Randomized queue is empty");
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] copy = new long[capacity];
+        System.arraycopy(queueElements, 0, copy, 0, size);
+        queueElements = copy;
+    }
+}
@@ -1,20 +1,89 @@
-import edu.princeton.cs.algs4.StdIn;
+import java.io.IOException;
+
 import edu.princeton.cs.algs4.StdOut;
 
+/**
+ * Prints k tokens of standard input chosen uniformly at random, in random order.
+ * Input is streamed into a reservoir of k tokens (Li's Algorithm L) so memory does not depend on input size.
+ * Instead of one random draw per token, the gap to the next replaced token is drawn directly, which is
+ * O(k log(n / k)) draws, and tokens in the gaps are skipped as bytes without building Strings.
+ * The reservoir is emptied through a RandomizedQueue, so output order is random as well.
+ * k has to be 0 <= k <= number of tokens like the assignment requires, input with less than k tokens is
+ * rejected before anything is printed.
+ *
+ * @author anilk
+ */
 public class Permutation {
 
     // If you are using eclipse hit CTRL-Z to send EOF to console so that it prints result!
-    public static void main(String[] args) {
-        
-        RandomizedQueue<String> randQueue = new RandomizedQueue<String>();        
-        while (!StdIn.isEmpty()) {
-            String item = StdIn.readString();
+    // Permutation k [seed]
+    public static void main(String[] args) throws IOException {
+        final int k = Integer.parseInt(args[0]);
+        if (k < 0) {
+            throw new IllegalArgumentException("Required k >= 0 but input k : " + k);
+        }
+        final RandomSource random = args.length >= 2 ? RandomSource.xoroshiro(Long.parseLong(args[1]))
+                                                     : RandomSource.stdRandom();
+
+        final String[] sampled = sample(new ByteTokenizer(System.in), k, random);
+        if (sampled.length < k) {
+            throw new IllegalArgumentException("Required k <= number of tokens but input k : " + k
+                                               + " number of tokens : " + sampled.length);
+        }
+        RandomizedQueue<String> randQueue = new RandomizedQueue<String>(random);
+        for (String item : sampled) {
             randQueue.enqueue(item);
         }
-        final int numberOfRandomizedDequeue = Integer.parseInt(args[0]);
-        for (int i = 0; i < numberOfRandomizedDequeue; i++) {
+        while (!randQueue.isEmpty()) {
             StdOut.println(randQueue.dequeue());
         }
     }
 
+    /**
+     * Algorithm L : after the first k tokens, w is the largest of k uniform keys of the reservoir and
+     * the number of tokens skipped before the next replacement is geometric with parameter w.
+     * @param tokens : input.
+     * @param k : reservoir size.
+     * @param random : random source.
+     * @return min(k, token count) tokens chosen uniformly without replacement.
+     */
+    private static String[] sample(ByteTokenizer tokens, int k, RandomSource random) throws IOException {
+        final String[] reservoir = new String[k];
+        int count = 0;
+        while (count < k) {
+            String token = tokens.next();
+            if (token == null) {
+                final String[] result = new String[count];
+                System.arraycopy(reservoir, 0, result, 0, count);
+                return result;
+            }
+            reservoir[count++] = token;
+        }
+        if (k == 0) {
+            return reservoir;
+        }
+
+        double w = Math.exp(Math.log(uniformPositive(random)) / k);
+        while (true) {
+            // floor(log(u) / log(1 - w)) tokens are skipped, the one after them enters the reservoir
+            final double skip = Math.floor(Math.log(uniformPositive(random)) / Math.log1p(-w));
+            for (double i = 0; i < skip; i++) {
+                if (!tokens.skip()) {
+                    return reservoir;
+                }
+            }
+            final String token = tokens.next();
+            if (token == null) {
+                return reservoir;
+            }
+            reservoir[random.nextInt(k)] = token;
+            w *= Math.exp(Math.log(uniformPositive(random)) / k);
+        }
+    }
+
+    // uniform in (0, 1], log of it is finite
+    private static double uniformPositive(RandomSource random) {
+        return 1.0 - random.nextDouble();
+    }
+
 }
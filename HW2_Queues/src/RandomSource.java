@@ -0,0 +1,97 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * Random number source of randomized queues. A queue owning its source does not contend with other queues
+ * on the single shared generator of StdRandom, and a seeded source makes its runs reproducible.
+ *
+ * Only nextInt() has to be implemented, nextInt(bound) maps 32 random bits into [0, bound) with
+ * Lemire's multiply-shift: the high half of bits * bound is the result, a second draw is only needed
+ * when the low half falls into the biased region, with probability below bound / 2^32.
+ *
+ * @author anilk
+ */
+@FunctionalInterface
+public interface RandomSource {
+
+    /**
+     * @return 32 uniformly random bits.
+     */
+    int nextInt();
+
+    /**
+     * @param bound : exclusive upper bound.
+     * @return uniformly random int in [0, bound).
+     * @throws IllegalArgumentException if bound is <= 0
+     */
+    default int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive but input bound : " + bound);
+        }
+        long product = (nextInt() & 0xffffffffL) * bound;
+        if ((product & 0xffffffffL) < bound) {
+            // (2^32 - bound) mod bound low values are biased, redraw them
+            final long threshold = (0x100000000L - bound) % bound;
+            while ((product & 0xffffffffL) < threshold) {
+                product = (nextInt() & 0xffffffffL) * bound;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    /**
+     * @return uniformly random double in [0, 1) with 53 random bits.
+     */
+    default double nextDouble() {
+        final long high = nextInt() >>> 5;
+        final long low = nextInt() >>> 6;
+        return ((high << 26) + low) * 0x1.0p-53;
+    }
+
+    /**
+     * @return source drawing from the shared StdRandom generator, seeded by StdRandom.setSeed.
+     */
+    static RandomSource stdRandom() {
+        return new RandomSource() {
+            @Override
+            public int nextInt() {
+                return (StdRandom.uniform(1 << 16) << 16) | StdRandom.uniform(1 << 16);
+            }
+
+            @Override
+            public int nextInt(int bound) {
+                return StdRandom.uniform(bound);
+            }
+
+            @Override
+            public double nextDouble() {
+                return StdRandom.uniform();
+            }
+        };
+    }
+
+    /**
+     * @param seed : seed of the generator.
+     * @return SplittableRandom source, not thread safe.
+     */
+    static RandomSource splittable(long seed) {
+        return new SplittableRandom(seed)::nextInt;
+    }
+
+    /**
+     * @param seed : seed of the generator.
+     * @return xoroshiro128++ source, not thread safe.
+     */
+    static RandomSource xoroshiro(long seed) {
+        return new XoroshiroRandom(seed);
+    }
+
+    /**
+     * @return source drawing from ThreadLocalRandom of the calling thread, thread safe but not seedable.
+     */
+    static RandomSource threadLocal() {
+        return () -> ThreadLocalRandom.current().nextInt();
+    }
+}
@@ -4,7 +4,6 @@ import java.util.Scanner;
 
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.StdRandom;
 
 
 /**
@@ -18,23 +17,39 @@ import edu.princeton.cs.algs4.StdRandom;
  */
 public class RandomizedQueue<Item> implements Iterable<Item> {
     
+    /**
+     * Lazy Fisher-Yates over the queue array as it was when the iterator was created.
+     * Step i swaps a random position of [i, count) into position i, but instead of copying the array
+     * only positions whose content moved are recorded in swapped, so the first k items cost O(k) time and memory.
+     * The array is shared with the queue, slots the queue overwrote since creation are read back from the
+     * undo log : the first logged old item of a slot is its content at creation, recorded in restored.
+     */
     private class RandomizedQueueIterator implements Iterator<Item> {
-        
-        // Values copied into iterator to make iterator to work even dequeue called
-        // from RandomizedQueue object during the iteraton.
-        
+        private final Item[] source;
+        private final int count;
+        private final UndoLog<Item> log;
+        private int logSeen;
+        private final SwappedIndexes swapped = new SwappedIndexes();
+        // slot to -1 - index of the log entry holding its item at creation, slots not in it are unchanged
+        private final SwappedIndexes restored = new SwappedIndexes();
         private int currentIndex = 0;
-        private final Item[] iteratorList;
         
-        public RandomizedQueueIterator() {
-            iteratorList = (Item[]) new Object[size];
-            System.arraycopy(queueElements, 0, iteratorList, 0, size);
-            StdRandom.shuffle(iteratorList);
+        private RandomizedQueueIterator() {
+            source = queueElements;
+            count = size;
+            if (count > 0) {
+                if (undoLog == null) {
+                    undoLog = new UndoLog<>();
+                }
+                iteratorReaders++;
+            }
+            log = undoLog;
+            logSeen = log == null ? 0 : log.length;
         }
         
         @Override
         public boolean hasNext() {
-            return currentIndex < iteratorList.length;
+            return currentIndex < count;
         }
 
         @Override
@@ -42,22 +57,136 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             if (!hasNext()) {
                 throw new NoSuchElementException("RandomizedQueueIterator next element does not exists");
             }
-            return iteratorList[currentIndex++];
+            final int picked = currentIndex + random.nextInt(count - currentIndex);
+            final int result = swapped.get(picked);
+            swapped.put(picked, swapped.get(currentIndex));
+            currentIndex++;
+            final Item item = itemAtCreation(result);
+            if (currentIndex == count && log == undoLog && --iteratorReaders == 0) {
+                // last unfinished iterator, queue writes do not need to be logged any more
+                undoLog = null;
+            }
+            return item;
+        }
+        
+        private Item itemAtCreation(int index) {
+            for (; logSeen < log.length; logSeen++) {
+                final int slot = log.slots[logSeen];
+                if (slot < count && restored.get(slot) == slot) {
+                    restored.put(slot, -1 - logSeen);
+                }
+            }
+            final int entry = restored.get(index);
+            return entry == index ? source[index] : log.oldItems[-1 - entry];
         }
 
         @Override
         public void remove() {
             throw new UnsupportedOperationException("RandomizedQueueIterator does not support remove operation");
         }
+    }
+    
+    /**
+     * Slots of the queue array overwritten while iterators read it, in write order, with the items they held.
+     * A resize replaces the array, the old array and its log are left to the iterators reading them.
+     */
+    private static final class UndoLog<Item> {
+        private int[] slots = new int[8];
+        private Item[] oldItems = (Item[]) new Object[8];
+        private int length = 0;
         
+        private void add(int slot, Item oldItem) {
+            if (length == slots.length) {
+                final int[] slotCopy = new int[2 * length];
+                final Item[] itemCopy = (Item[]) new Object[2 * length];
+                System.arraycopy(slots, 0, slotCopy, 0, length);
+                System.arraycopy(oldItems, 0, itemCopy, 0, length);
+                slots = slotCopy;
+                oldItems = itemCopy;
+            }
+            slots[length] = slot;
+            oldItems[length] = oldItem;
+            length++;
+        }
+    }
+    
+    /**
+     * Open addressing map of array position to the source index it currently holds, positions not in the map
+     * hold their own index. Keys are stored + 1 so that 0 marks an empty slot.
+     */
+    private static final class SwappedIndexes {
+        private int[] keys = new int[8];
+        private int[] values = new int[8];
+        private int count = 0;
         
+        private int get(int position) {
+            final int mask = keys.length - 1;
+            for (int slot = hash(position) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == position + 1) {
+                    return values[slot];
+                }
+            }
+            return position;
+        }
+        
+        private void put(int position, int sourceIndex) {
+            final int mask = keys.length - 1;
+            int slot = hash(position) & mask;
+            while (keys[slot] != 0 && keys[slot] != position + 1) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = position + 1;
+                count++;
+            }
+            values[slot] = sourceIndex;
+            if (2 * count > keys.length) {
+                grow();
+            }
+        }
+        
+        private void grow() {
+            final int[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new int[2 * oldKeys.length];
+            values = new int[2 * oldKeys.length];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i] - 1, oldValues[i]);
+                }
+            }
+        }
+        
+        private static int hash(int position) {
+            final int h = position * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
     }
     
     private Item[] queueElements;
     private int size = 0;
+    // unfinished iterators reading queueElements, writes to it are logged in undoLog while there are any
+    private int iteratorReaders = 0;
+    private UndoLog<Item> undoLog;
+    private final RandomSource random;
     
     // construct an empty randomized queue
     public RandomizedQueue() {
+        this(RandomSource.stdRandom());
+    }
+    
+    /**
+     * Constructs an empty randomized queue drawing indexes from its own source,
+     * e.g. RandomSource.xoroshiro(seed) for a reproducible queue not shared with others.
+     * @param random : source of dequeue, sample and iterator indexes.
+     * @throws IllegalArgumentException if random is null.
+     */
+    public RandomizedQueue(RandomSource random) {
+        if (random == null) {
+            throw new IllegalArgumentException("Random source of randomized queue can not be null");
+        }
+        this.random = random;
         queueElements = (Item[]) new Object[2];
     }
 
@@ -75,7 +204,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     public void enqueue(Item item) {
         assertIfIllegalArgument(item);
         resizeUpCheck();
-        queueElements[size] = item;
+        set(size, item);
         size++;
     }
     
@@ -88,11 +217,11 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     // remove and return a random item
     public Item dequeue() {
         assertIfEmpty();
-        int randomIndex = StdRandom.uniform(size);
+        int randomIndex = random.nextInt(size);
         
         Item result = queueElements[randomIndex];
-        queueElements[randomIndex] = queueElements[size - 1];
-        queueElements[size - 1] = null;
+        set(randomIndex, queueElements[size - 1]);
+        set(size - 1, null);
         size--;
         resizeDownCheck();
         return result;
@@ -107,12 +236,16 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     // return a random item (but do not remove it)
     public Item sample() {
         assertIfEmpty();
-        int randomIndex = StdRandom.uniform(size);
+        int randomIndex = random.nextInt(size);
         
         return queueElements[randomIndex];
     }
 
-    // return an independent iterator over items in random order
+    /**
+     * Returns an independent iterator over items in random order in O(1), it shares the queue array.
+     * While it is unfinished every enqueue and dequeue logs the slots it overwrites in O(1), the log is
+     * bounded by copying the array once it holds as many entries as the array has slots.
+     */
     @Override
     public Iterator<Item> iterator() {
         return (new RandomizedQueueIterator());
@@ -130,6 +263,19 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
     }
     
+    // writes a slot of queueElements, logging its old item for unfinished iterators
+    private void set(int index, Item item) {
+        if (undoLog != null) {
+            if (undoLog.length == queueElements.length) {
+                resize(queueElements.length);
+            }
+            else {
+                undoLog.add(index, queueElements[index]);
+            }
+        }
+        queueElements[index] = item;
+    }
+    
     private boolean isFull() {
         return (size == queueElements.length);
     }
@@ -138,6 +284,9 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         Item[] copy = (Item[]) new Object[capacity];
         System.arraycopy(queueElements, 0, copy, 0, size);
         queueElements = copy;
+        // iterators keep reading the old array and its log
+        iteratorReaders = 0;
+        undoLog = null;
     }
     
 //-----------------------------End Of RandomizedQueue Implementation------------------------------------
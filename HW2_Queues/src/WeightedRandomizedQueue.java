@@ -0,0 +1,476 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Randomized queue sampling every item with probability proportional to its weight, each item is stored once.
+ *
+ *      items, weights : parallel arrays, dequeue moves the last item into the removed slot like RandomizedQueue.
+ *      tree : Fenwick tree of weights, tree[i] is the sum of weights of positions (i - lowbit(i), i] (1 based).
+ *             Sampling descends it with a uniform target in [0, total weight), updates walk up it, both O(log n).
+ *             Adding a delta leaves rounding error in the nodes up to the ulp of the total it passed through,
+ *             treeError bounds the error kept since the tree was built. An update whose error is more than
+ *             its share of ERROR_TOLERANCE recomputes its path from the child nodes instead, O(log^2 n) but
+ *             adding no error, so decaying or restoring a huge weight does not leave its rounding behind.
+ *             Tree is rebuilt in O(n) once treeError exceeds ERROR_TOLERANCE of the average weight, which
+ *             takes at least size / log n cheap updates unless the total shrinks by orders of magnitude.
+ *      positions : position of every item, so updateWeight finds it in O(1). Items are distinct.
+ * Once contents stop changing, frozen() builds an alias table which samples in O(1).
+ *
+ * @author anilk
+ *
+ * @param <Item>
+ */
+public class WeightedRandomizedQueue<Item> implements Iterable<Item> {
+    private static final int MIN_CAPACITY = 2;
+    // Rounding error allowed in the tree, relative to the average weight.
+    private static final double ERROR_TOLERANCE = 0x1p-10;
+
+    /**
+     * Immutable snapshot of a weighted queue sampled with Vose's alias method : position i is drawn uniformly,
+     * then kept with probability probability[i] or replaced by alias[i]. O(n) to build, O(1) per sample.
+     *
+     * @param <Item>
+     */
+    public static final class AliasTable<Item> {
+        private final Item[] items;
+        private final double[] probability;
+        private final int[] alias;
+        private final RandomSource random;
+
+        private AliasTable(Item[] items, double[] weights, int size, double totalWeight, RandomSource random) {
+            this.items = (Item[]) new Object[size];
+            System.arraycopy(items, 0, this.items, 0, size);
+            this.probability = new double[size];
+            this.alias = new int[size];
+            this.random = random;
+
+            // scaled weights average 1, small ones are topped up by an alias from large ones
+            final double[] scaled = new double[size];
+            final int[] small = new int[size];
+            final int[] large = new int[size];
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int i = 0; i < size; i++) {
+                scaled[i] = weights[i] * size / totalWeight;
+                if (scaled[i] < 1.0) {
+                    small[smallCount++] = i;
+                }
+                else {
+                    large[largeCount++] = i;
+                }
+            }
+            while (smallCount > 0 && largeCount > 0) {
+                final int less = small[--smallCount];
+                final int more = large[--largeCount];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+                if (scaled[more] < 1.0) {
+                    small[smallCount++] = more;
+                }
+                else {
+                    large[largeCount++] = more;
+                }
+            }
+            // left overs are 1 up to rounding
+            while (largeCount > 0) {
+                probability[large[--largeCount]] = 1.0;
+            }
+            while (smallCount > 0) {
+                probability[small[--smallCount]] = 1.0;
+            }
+        }
+
+        // return a weighted random item in O(1)
+        public Item sample() {
+            if (items.length == 0) {
+                throw new NoSuchElementException("Alias table is empty");
+            }
+            final int position = random.nextInt(items.length);
+            return random.nextDouble() < probability[position] ? items[position] : items[alias[position]];
+        }
+
+        // return the number of items
+        public int size() {
+            return items.length;
+        }
+    }
+
+    /**
+     * Weighted random order without replacement : a copy of the weights and tree from which every returned
+     * item is removed, O(n) to create and O(log n) amortized per item. Tree is rebuilt whenever half of the
+     * remaining items are returned or a returned item outweighs the remaining ones, so rounding of removals
+     * does not pile up.
+     */
+    private class WeightedIterator implements Iterator<Item> {
+        private final Item[] iteratorItems;
+        private final double[] iteratorWeights;
+        private final double[] iteratorTree;
+        private final int count;
+        private int returned = 0;
+        private int nextRebuild;
+
+        private WeightedIterator() {
+            count = size;
+            iteratorItems = (Item[]) new Object[count];
+            iteratorWeights = new double[count];
+            System.arraycopy(items, 0, iteratorItems, 0, count);
+            System.arraycopy(weights, 0, iteratorWeights, 0, count);
+            iteratorTree = new double[count + 1];
+            buildTree(iteratorTree, iteratorWeights, count);
+            nextRebuild = count / 2;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return returned < count;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("WeightedIterator next element does not exists");
+            }
+            final int position = find(iteratorTree, iteratorWeights, count, prefixSum(iteratorTree, count));
+            final double removed = iteratorWeights[position];
+            addToTree(iteratorTree, count, position, -removed);
+            iteratorWeights[position] = 0.0;
+            returned++;
+            if (returned == nextRebuild || removed >= prefixSum(iteratorTree, count)) {
+                Arrays.fill(iteratorTree, 0.0);
+                buildTree(iteratorTree, iteratorWeights, count);
+                nextRebuild = returned + (count - returned) / 2;
+            }
+            return iteratorItems[position];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("WeightedIterator does not support remove operation");
+        }
+    }
+
+    private Item[] items;
+    private double[] weights;
+    private double[] tree;
+    private int size = 0;
+    // bound of rounding error added to tree since it was built from weights
+    private double treeError = 0.0;
+    private final Map<Item, Integer> positions = new HashMap<>();
+    private final RandomSource random;
+
+    // construct an empty weighted randomized queue
+    public WeightedRandomizedQueue() {
+        this(RandomSource.stdRandom());
+    }
+
+    /**
+     * @param random : source of sampling draws.
+     * @throws IllegalArgumentException if random is null.
+     */
+    public WeightedRandomizedQueue(RandomSource random) {
+        if (random == null) {
+            throw new IllegalArgumentException("Random source of randomized queue can not be null");
+        }
+        this.random = random;
+        items = (Item[]) new Object[MIN_CAPACITY];
+        weights = new double[MIN_CAPACITY];
+        tree = new double[MIN_CAPACITY + 1];
+    }
+
+    // is the randomized queue empty?
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // return the number of items on the randomized queue
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds item with the given weight in O(log n) amortized.
+     * @param item : item not already in the queue.
+     * @param weight : positive finite weight.
+     * @throws IllegalArgumentException if item is null or already in the queue, or weight is not positive and finite.
+     */
+    public void enqueue(Item item, double weight) {
+        if (item == null) {
+            throw new IllegalArgumentException("Null input item into randomized queue is not supported");
+        }
+        validateWeight(weight);
+        if (positions.containsKey(item)) {
+            throw new IllegalArgumentException("Item " + item + " is already in the weighted randomized queue");
+        }
+        if (size == items.length) {
+            resize(2 * items.length);
+        }
+        items[size] = item;
+        weights[size] = weight;
+        positions.put(item, size);
+        size++;
+        updateTree(size - 1, 0.0);
+    }
+
+    /**
+     * Changes weight of an item in O(log n) amortized, O(log^2 n) if the total changes by orders of magnitude.
+     * @param item : item in the queue.
+     * @param weight : positive finite weight.
+     * @throws IllegalArgumentException if weight is not positive and finite.
+     * @throws NoSuchElementException if item is not in the queue.
+     */
+    public void updateWeight(Item item, double weight) {
+        validateWeight(weight);
+        final Integer position = positions.get(item);
+        if (position == null) {
+            throw new NoSuchElementException("Item " + item + " is not in the weighted randomized queue");
+        }
+        final double oldWeight = weights[position];
+        weights[position] = weight;
+        updateTree(position, oldWeight);
+    }
+
+    // remove and return a weighted random item in O(log n)
+    public Item dequeue() {
+        assertIfEmpty();
+        final int position = samplePosition();
+        final Item result = items[position];
+        final int last = size - 1;
+
+        final double lastWeight = weights[last];
+        weights[last] = 0.0;
+        updateTree(last, lastWeight);
+        if (position != last) {
+            final double oldWeight = weights[position];
+            items[position] = items[last];
+            weights[position] = lastWeight;
+            positions.put(items[position], position);
+            updateTree(position, oldWeight);
+        }
+        items[last] = null;
+        positions.remove(result);
+        size--;
+        if (size > 0 && size <= items.length / 4) {
+            resize(items.length / 2);
+        }
+        return result;
+    }
+
+    // return a weighted random item (but do not remove it) in O(log n)
+    public Item sample() {
+        assertIfEmpty();
+        return items[samplePosition()];
+    }
+
+    /**
+     * @return alias table of the current items and weights, later changes of the queue do not affect it.
+     */
+    public AliasTable<Item> frozen() {
+        double totalWeight = 0.0;
+        for (int i = 0; i < size; i++) {
+            totalWeight += weights[i];
+        }
+        return new AliasTable<>(items, weights, size, totalWeight, random);
+    }
+
+    // return an independent iterator over items in weighted random order
+    @Override
+    public Iterator<Item> iterator() {
+        return new WeightedIterator();
+    }
+
+    private int samplePosition() {
+        return find(tree, weights, size, prefixSum(tree, size));
+    }
+
+    /**
+     * Descends the Fenwick tree to the first position whose prefix sum exceeds a uniform target in [0, total).
+     * Positions of zero weight are never returned since their prefix sum equals the previous one.
+     */
+    private int find(double[] fenwick, double[] itemWeights, int count, double total) {
+        double target = random.nextDouble() * total;
+        int position = 0;
+        for (int step = Integer.highestOneBit(fenwick.length - 1); step > 0; step >>>= 1) {
+            final int next = position + step;
+            if (next <= count && fenwick[next] <= target) {
+                position = next;
+                target -= fenwick[next];
+            }
+        }
+        // rounding can step past the last position or onto a removed one, take the nearest weighted position
+        position = Math.min(position, count - 1);
+        for (int i = position; i < count; i++) {
+            if (itemWeights[i] != 0.0) {
+                return i;
+            }
+        }
+        while (itemWeights[position] == 0.0) {
+            position--;
+        }
+        return position;
+    }
+
+    /**
+     * Brings tree up to date after weights[position] changed from oldWeight, see class comment.
+     * Every node on the path holds at most the larger of the totals before and after, so adding the delta
+     * rounds each of them by at most its ulp. Cheap updates may each add 1 / size of the error allowed by
+     * the smaller total, a rebuild is then charged to at least size / depth of them.
+     */
+    private void updateTree(int position, double oldWeight) {
+        final double delta = weights[position] - oldWeight;
+        final double before = prefixSum(tree, items.length);
+        final double after = before + delta;
+        final int depth = 32 - Integer.numberOfLeadingZeros(items.length);
+        final double error = depth * Math.ulp(Math.max(before, after));
+        final double allowed = ERROR_TOLERANCE * Math.min(before, after) / Math.max(1, size);
+        if (error * size <= allowed * depth) {
+            addToTree(tree, items.length, position, delta);
+            treeError += error;
+        }
+        else {
+            recomputePath(position);
+        }
+        if (treeError > ERROR_TOLERANCE * prefixSum(tree, items.length) / Math.max(1, size)) {
+            Arrays.fill(tree, 0.0);
+            buildTree(tree, weights, size);
+            treeError = 0.0;
+        }
+    }
+
+    // sets every node above position to the sum of its weight and child nodes, (i - lowbit(i), i - 1] are covered
+    // by the nodes i - 1, i - 2, i - 4, ... i - lowbit(i) / 2
+    private void recomputePath(int position) {
+        for (int i = position + 1; i <= items.length; i += i & -i) {
+            double sum = weights[i - 1];
+            for (int child = 1; child < (i & -i); child <<= 1) {
+                sum += tree[i - child];
+            }
+            tree[i] = sum;
+        }
+    }
+
+    // weights are stored once, tree is rebuilt in O(n) for the new capacity
+    private void resize(int capacity) {
+        final Item[] itemCopy = (Item[]) new Object[capacity];
+        final double[] weightCopy = new double[capacity];
+        System.arraycopy(items, 0, itemCopy, 0, size);
+        System.arraycopy(weights, 0, weightCopy, 0, size);
+        items = itemCopy;
+        weights = weightCopy;
+        tree = new double[capacity + 1];
+        buildTree(tree, weights, size);
+        treeError = 0.0;
+    }
+
+    private void assertIfEmpty() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Randomized queue is empty");
+        }
+    }
+
+    private static void validateWeight(double weight) {
+        if (!(weight > 0.0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight must be positive and finite but input weight : " + weight);
+        }
+    }
+
+    // adds delta to the weight of 0 based position
+    private static void addToTree(double[] fenwick, int capacity, int position, double delta) {
+        for (int i = position + 1; i <= capacity; i += i & -i) {
+            fenwick[i] += delta;
+        }
+    }
+
+    // sum of weights of positions 0 to count - 1
+    private static double prefixSum(double[] fenwick, int count) {
+        double result = 0.0;
+        for (int i = count; i > 0; i -= i & -i) {
+            result += fenwick[i];
+        }
+        return result;
+    }
+
+    // O(n) construction, every node passes its sum to its parent
+    private static void buildTree(double[] fenwick, double[] itemWeights, int count) {
+        System.arraycopy(itemWeights, 0, fenwick, 1, count);
+        for (int i = 1; i < fenwick.length; i++) {
+            final int parent = i + (i & -i);
+            if (parent < fenwick.length) {
+                fenwick[parent] += fenwick[i];
+            }
+        }
+    }
+
+//-----------------------------End Of WeightedRandomizedQueue Implementation------------------------------------
+
+    // Below code segments normally should be seperated as unit test!
+    // items 1 to 4 with weights 1 to 4 should be sampled 10%, 20%, 30%, 40% of the time.
+    public static void main(String[] args) {
+        final int draws = 1000000;
+        WeightedRandomizedQueue<Integer> queue = new WeightedRandomizedQueue<>(RandomSource.xoroshiro(1));
+        for (int i = 1; i <= 4; i++) {
+            queue.enqueue(i, i);
+        }
+        final AliasTable<Integer> table = queue.frozen();
+        final int[] sampled = new int[5];
+        final int[] aliased = new int[5];
+        for (int i = 0; i < draws; i++) {
+            sampled[queue.sample()]++;
+            aliased[table.sample()]++;
+        }
+        for (int i = 1; i <= 4; i++) {
+            StdOut.printf("item %d sample %.4f alias %.4f [%.4f]%n", i, (double) sampled[i] / draws,
+                          (double) aliased[i] / draws, i / 10.0);
+        }
+
+        queue.updateWeight(4, 6);
+        StdOut.print("updateWeight 4 -> 6, dequeue order :");
+        while (!queue.isEmpty()) {
+            StdOut.print(" " + queue.dequeue());
+        }
+        StdOut.println();
+
+        // rounding of huge weights must not stay in the tree : 1024 unit weights, item 0 is raised to 1e17
+        // and decayed by halving, then item 1 is boosted and restored many times, every item should
+        // still be drawn about draws / 1024 times.
+        final int count = 1024;
+        WeightedRandomizedQueue<Integer> uniform = new WeightedRandomizedQueue<>(RandomSource.xoroshiro(2));
+        for (int i = 0; i < count; i++) {
+            uniform.enqueue(i, 1.0);
+        }
+        double weight = 1e17;
+        for (int i = 0; i <= 56; i++, weight /= 2) {
+            uniform.updateWeight(0, weight);
+        }
+        uniform.updateWeight(0, 1.0);
+        printSpread("decay", uniform, count, 2 * draws);
+
+        final int boosts = 100000;
+        final long start = System.nanoTime();
+        for (int i = 0; i < boosts; i++) {
+            uniform.updateWeight(1, 4e6);
+            uniform.updateWeight(1, 1.0);
+        }
+        final double micros = (System.nanoTime() - start) / 1000.0 / (2 * boosts);
+        printSpread(String.format("boost/restore %.3f us per updateWeight", micros), uniform, count, 2 * draws);
+    }
+
+    private static void printSpread(String label, WeightedRandomizedQueue<Integer> queue, int count, int draws) {
+        final int[] sampled = new int[count];
+        for (int i = 0; i < draws; i++) {
+            sampled[queue.sample()]++;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int drawn : sampled) {
+            min = Math.min(min, drawn);
+            max = Math.max(max, drawn);
+        }
+        StdOut.printf("%s : draws per item min %d max %d [%d]%n", label, min, max, draws / count);
+    }
+}
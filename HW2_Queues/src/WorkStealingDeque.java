@@ -0,0 +1,193 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Chase-Lev work stealing deque. One owner thread pushes and pops items at the bottom end without locks,
+ * any number of thief threads steal items from the top end with a compare and set on top.
+ *
+ *      top : index of the oldest item, only increases, moved by a successful steal or by the owner when it
+ *            races thieves for the last item.
+ *      bottom : index after the newest item, written only by the owner.
+ *      items : circular array, index i is stored at i & (length - 1). Grows by doubling when full,
+ *              thieves holding the old array still read valid items since the owner never writes it again.
+ * Items are in [top, bottom), the deque is empty when top >= bottom.
+ *
+ * top and bottom are volatile so that the owner's write of bottom in pop and its read of top are not reordered,
+ * which is the store-load fence the algorithm requires. A slot taken by a thief keeps its reference until
+ * the owner overwrites it or the array grows, thieves can not clear it since the owner may have reused it.
+ *
+ * @author anilk
+ *
+ * @param <Item>
+ */
+public class WorkStealingDeque<Item> {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MAX_CAPACITY = 1 << 30;
+    // newUpdater only takes the raw class, the cast to the wildcard type can not be checked
+    @SuppressWarnings("unchecked")
+    private static final AtomicLongFieldUpdater<WorkStealingDeque<?>> TOP =
+        (AtomicLongFieldUpdater<WorkStealingDeque<?>>) (AtomicLongFieldUpdater<?>)
+            AtomicLongFieldUpdater.newUpdater(WorkStealingDeque.class, "top");
+
+    private volatile long top = 0;
+    private volatile long bottom = 0;
+    private volatile Item[] items;
+
+    // construct an empty deque
+    public WorkStealingDeque() {
+        items = (Item[]) new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds item at the bottom, only the owner thread may call it.
+     * @param item : non null item.
+     * @throws IllegalArgumentException if item is null.
+     */
+    public void push(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Null input item into deque is not supported");
+        }
+        final long b = bottom;
+        final long t = top;
+        Item[] array = items;
+        if (b - t >= array.length) {
+            array = grow(array, t, b);
+        }
+        array[(int) b & (array.length - 1)] = item;
+        // volatile write publishes the item to thieves reading bottom
+        bottom = b + 1;
+    }
+
+    /**
+     * Removes the newest item, only the owner thread may call it.
+     * @return newest item, or null if deque is empty.
+     */
+    public Item pop() {
+        final long b = bottom - 1;
+        final Item[] array = items;
+        bottom = b;
+        final long t = top;
+        if (t > b) {
+            // empty, restore bottom
+            bottom = b + 1;
+            return null;
+        }
+        final int index = (int) b & (array.length - 1);
+        Item result = array[index];
+        if (t == b) {
+            // last item, race thieves for it on top
+            if (!TOP.compareAndSet(this, t, t + 1)) {
+                result = null;
+            }
+            bottom = b + 1;
+        }
+        if (result != null) {
+            array[index] = null;
+        }
+        return result;
+    }
+
+    /**
+     * Removes the oldest item, any thread may call it. Retries while other threads win the race for top.
+     * @return oldest item, or null if deque is empty.
+     */
+    public Item steal() {
+        while (true) {
+            final long t = top;
+            final long b = bottom;
+            if (t >= b) {
+                return null;
+            }
+            final Item[] array = items;
+            final Item result = array[(int) t & (array.length - 1)];
+            if (TOP.compareAndSet(this, t, t + 1)) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * @return number of items, only a snapshot while other threads are active.
+     */
+    public int size() {
+        final long b = bottom;
+        final long t = top;
+        return (int) Math.max(0, b - t);
+    }
+
+    // is the deque empty? only a snapshot while other threads are active.
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Copies items [top, bottom) into an array of double length, indexes do not change.
+     */
+    private Item[] grow(Item[] array, long t, long b) {
+        if (array.length == MAX_CAPACITY) {
+            throw new IllegalStateException("WorkStealingDeque can not hold more than " + MAX_CAPACITY + " items");
+        }
+        final Item[] copy = (Item[]) new Object[2 * array.length];
+        for (long i = t; i < b; i++) {
+            copy[(int) i & (copy.length - 1)] = array[(int) i & (array.length - 1)];
+        }
+        items = copy;
+        return copy;
+    }
+
+//-----------------------------End Of WorkStealingDeque Implementation------------------------------------
+
+    // Below code segments normally should be seperated as unit test!
+    // owner pushes and pops while thieves steal, every item has to be taken exactly once.
+    public static void main(String[] args) throws InterruptedException {
+        final int itemCount = args.length >= 1 ? Integer.parseInt(args[0]) : 1000000;
+        final int thiefCount = args.length >= 2 ? Integer.parseInt(args[1]) : 3;
+        final WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        final AtomicIntegerArray taken = new AtomicIntegerArray(itemCount);
+        final Thread[] thieves = new Thread[thiefCount];
+        final AtomicBoolean ownerDone = new AtomicBoolean();
+
+        for (int i = 0; i < thiefCount; i++) {
+            thieves[i] = new Thread(() -> {
+                while (true) {
+                    Integer item = deque.steal();
+                    if (item != null) {
+                        taken.incrementAndGet(item);
+                    }
+                    else if (ownerDone.get() && deque.isEmpty()) {
+                        return;
+                    }
+                }
+            });
+            thieves[i].start();
+        }
+
+        for (int i = 0; i < itemCount; i++) {
+            deque.push(i);
+            if (i % 3 == 0) {
+                Integer item = deque.pop();
+                if (item != null) {
+                    taken.incrementAndGet(item);
+                }
+            }
+        }
+        for (Integer item = deque.pop(); item != null; item = deque.pop()) {
+            taken.incrementAndGet(item);
+        }
+        ownerDone.set(true);
+        for (Thread thief : thieves) {
+            thief.join();
+        }
+
+        int wrong = 0;
+        for (int i = 0; i < itemCount; i++) {
+            if (taken.get(i) != 1) {
+                wrong++;
+            }
+        }
+        StdOut.println(wrong == 0 ? "every item taken once" : wrong + " items lost or taken twice");
+    }
+}
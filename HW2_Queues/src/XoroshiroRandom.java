@@ -0,0 +1,42 @@
+/**
+ * xoroshiro128++ generator of Blackman and Vigna, 128 bits of state and period 2^128 - 1.
+ * State is filled from the seed by SplitMix64 so that similar seeds give unrelated streams.
+ *
+ * @author anilk
+ */
+final class XoroshiroRandom implements RandomSource {
+    private long state0;
+    private long state1;
+
+    XoroshiroRandom(long seed) {
+        state0 = splitMix64(seed);
+        state1 = splitMix64(seed + 0x9e3779b97f4a7c15L);
+        if ((state0 | state1) == 0) {
+            // all zero state is the only fixed point
+            state1 = 1;
+        }
+    }
+
+    long nextLong() {
+        final long s0 = state0;
+        long s1 = state1;
+        final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+        s1 ^= s0;
+        state0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+        state1 = Long.rotateLeft(s1, 28);
+        return result;
+    }
+
+    @Override
+    public int nextInt() {
+        // high bits are the strongest
+        return (int) (nextLong() >>> 32);
+    }
+
+    private static long splitMix64(long seed) {
+        long z = seed + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}